@@ -0,0 +1,82 @@
+package io.gresse.hugo.simpleexoplayer.cache;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of the cached length of a media, done before each prefetch, on a cache holding a few
+ * media split in spans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MediaCacheBenchmark {
+
+    private static final int  MEDIA_LENGTH = 1024 * 1024;
+    private static final long SPAN_SIZE    = 64 * 1024;
+
+    @Param({"4", "32"})
+    public int mediaCount;
+
+    private File       mDirectory;
+    private MediaCache mMediaCache;
+    private Uri[]      mUris;
+    private int        mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("mediacache", "");
+        if (!mDirectory.delete() || !mDirectory.mkdir()) {
+            throw new IOException("Cannot create the cache directory");
+        }
+        mMediaCache = new MediaCache(mDirectory, MEDIA_LENGTH * (long) mediaCount * 2, SPAN_SIZE);
+
+        byte[] media = new byte[MEDIA_LENGTH];
+        byte[] buffer = new byte[16 * 1024];
+        mUris = new Uri[mediaCount];
+        for (int i = 0; i < mediaCount; i++) {
+            mUris[i] = Uri.parse("https://cdn.example.com/videos/" + i + ".mp4");
+            // Reading through the cache data source writes the media in the cache
+            DataSource dataSource = mMediaCache.createDataSource(new ByteArrayDataSource(media));
+            dataSource.open(new DataSpec(mUris[i], 0, C.LENGTH_UNBOUNDED, null));
+            while (dataSource.read(buffer, 0, buffer.length) != C.RESULT_END_OF_INPUT) {
+                // Read the whole media.
+            }
+            dataSource.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public long getCachedLength() {
+        return mMediaCache.getCachedLength(mUris[mIndex++ % mediaCount]);
+    }
+}
@@ -0,0 +1,97 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of a progress event to the player listeners, compared to the iteration of a
+ * {@link CopyOnWriteArrayList} it replaced. Run with -prof gc to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListenerDispatchBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int listenerCount;
+
+    private PlayerListenerList                            mListenerList;
+    private CopyOnWriteArrayList<SimpleExoPlayerListener> mCopyOnWriteList;
+    private long                                          mPosition;
+
+    @Setup
+    public void setUp() {
+        mListenerList = new PlayerListenerList();
+        mCopyOnWriteList = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < listenerCount; i++) {
+            SimpleExoPlayerListener listener = new CountingListener();
+            // Half of the listeners do not want the progress events
+            mListenerList.add(listener, i % 2 == 0
+                    ? PlayerListenerList.EVENT_ALL
+                    : PlayerListenerList.EVENT_ALL & ~PlayerListenerList.EVENT_PROGRESS);
+            mCopyOnWriteList.add(listener);
+        }
+    }
+
+    @Benchmark
+    public long dispatchProgress() {
+        mListenerList.dispatchProgress(++mPosition);
+        return mPosition;
+    }
+
+    @Benchmark
+    public long copyOnWriteArrayListProgress() {
+        long position = ++mPosition;
+        for (SimpleExoPlayerListener listener : mCopyOnWriteList) {
+            listener.playerPublishProgress(position);
+        }
+        return position;
+    }
+
+    private static final class CountingListener implements SimpleExoPlayerListener {
+
+        long mLastProgress;
+
+        @Override
+        public void playerIsLoaded() {
+        }
+
+        @Override
+        public void playerViewAttached() {
+        }
+
+        @Override
+        public void playerError(Exception e) {
+        }
+
+        @Override
+        public void playerWillStartPlaying() {
+        }
+
+        @Override
+        public void playerStartPlaying() {
+        }
+
+        @Override
+        public void playerSurfaceDestroyedShouldPause() {
+        }
+
+        @Override
+        public void playerFinishPlaying() {
+        }
+
+        @Override
+        public void playerPublishProgress(long milliSecond) {
+            mLastProgress = milliSecond;
+        }
+    }
+}
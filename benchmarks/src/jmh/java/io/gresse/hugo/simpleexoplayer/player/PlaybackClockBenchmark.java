@@ -0,0 +1,100 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work done on the main thread at each tick of the playback clock: the progress publication
+ * and the cue point evaluation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlaybackClockBenchmark {
+
+    private static final long DURATION_MS = 10 * 60 * 1000;
+    private static final long TICK_MS     = 16;
+
+    @Param({"5", "100", "1000"})
+    public int cuePointCount;
+
+    private long[]            mCuePoints;
+    private CuePointTracker   mCuePointTracker;
+    private ProgressScheduler mProgressScheduler;
+    private long              mPosition;
+    private long              mNotified;
+
+    @Setup
+    public void setUp() {
+        mCuePoints = new long[cuePointCount];
+        for (int i = 0; i < cuePointCount; i++) {
+            mCuePoints[i] = DURATION_MS * (i + 1) / cuePointCount;
+        }
+
+        CuePointTracker.Clock clock = new CuePointTracker.Clock() {
+            @Override
+            public long getCurrentPosition() {
+                return mPosition;
+            }
+        };
+        mCuePointTracker = new CuePointTracker(clock);
+        mCuePointTracker.setListener(new CuePointTracker.Listener() {
+            @Override
+            public void onCuePoint(long cuePointMs, int index) {
+                mNotified++;
+            }
+        });
+        mCuePointTracker.setCuePoints(mCuePoints);
+        mCuePointTracker.resume();
+
+        mProgressScheduler = new ProgressScheduler(new ProgressScheduler.Target() {
+            @Override
+            public long getCurrentPosition() {
+                return mPosition;
+            }
+
+            @Override
+            public void onProgress(long positionMs) {
+                mNotified++;
+            }
+        });
+        mProgressScheduler.resume();
+    }
+
+    private long nextPosition() {
+        mPosition += TICK_MS;
+        if (mPosition > DURATION_MS) {
+            mPosition = 0;
+            mCuePointTracker.onSeek(0);
+        }
+        return mPosition;
+    }
+
+    @Benchmark
+    public long cuePointUpdate() {
+        mCuePointTracker.update(nextPosition());
+        return mNotified;
+    }
+
+    @Benchmark
+    public int cuePointSeek() {
+        long position = nextPosition() * 7 % DURATION_MS;
+        mCuePointTracker.onSeek(position);
+        return CuePointTracker.lowerBound(mCuePoints, position);
+    }
+
+    @Benchmark
+    public long progressTick() {
+        nextPosition();
+        mProgressScheduler.run();
+        return mNotified;
+    }
+}
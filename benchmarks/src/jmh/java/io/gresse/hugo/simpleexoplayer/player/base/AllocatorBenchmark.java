@@ -0,0 +1,69 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation and release of buffer segments, as done by the loaders, with the shared allocator
+ * and with the ExoPlayer default allocator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AllocatorBenchmark {
+
+    private static final int SEGMENTS = 32;
+
+    @Param({"shared", "default"})
+    public String allocatorType;
+
+    private Allocator    mAllocator;
+    private Allocation[] mAllocations;
+
+    @Setup
+    public void setUp() {
+        if (allocatorType.equals("shared")) {
+            SharedAllocator sharedAllocator = new SharedAllocator(
+                    SharedAllocator.DEFAULT_SEGMENT_SIZE, SharedAllocator.DEFAULT_TOTAL_BUDGET);
+            // Other players on screen share the budget
+            sharedAllocator.newClient();
+            sharedAllocator.newClient();
+            mAllocator = sharedAllocator.newClient();
+        } else {
+            mAllocator = new DefaultAllocator(SharedAllocator.DEFAULT_SEGMENT_SIZE);
+        }
+        mAllocations = new Allocation[SEGMENTS];
+        // Warm the pool of free segments
+        allocateAndRelease();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mAllocator.trim(0);
+    }
+
+    @Benchmark
+    public int allocateAndRelease() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            mAllocations[i] = mAllocator.allocate();
+        }
+        int total = mAllocator.getTotalBytesAllocated();
+        for (int i = 0; i < SEGMENTS; i++) {
+            mAllocator.release(mAllocations[i]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,60 @@
+package io.gresse.hugo.simpleexoplayer.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of the media type, from the url extension and from the first bytes of the media.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MimeTypeBenchmark {
+
+    @Param({
+            "https://cdn.example.com/videos/clip.mp4",
+            "https://cdn.example.com/live/master.m3u8?token=abcdef0123456789",
+            "https://cdn.example.com/stream/manifest"
+    })
+    public String url;
+
+    private byte[] mMp4Header;
+    private byte[] mTsHeader;
+
+    @Setup
+    public void setUp() {
+        mMp4Header = new byte[512];
+        mMp4Header[3] = 0x20;
+        mMp4Header[4] = 'f';
+        mMp4Header[5] = 't';
+        mMp4Header[6] = 'y';
+        mMp4Header[7] = 'p';
+
+        mTsHeader = new byte[512];
+        mTsHeader[0] = 0x47;
+        mTsHeader[188] = 0x47;
+    }
+
+    @Benchmark
+    public String getMimeType() {
+        return Utils.getMimeType(url);
+    }
+
+    @Benchmark
+    public String sniffMp4() {
+        return Utils.sniffMimeType(mMp4Header, mMp4Header.length);
+    }
+
+    @Benchmark
+    public String sniffTs() {
+        return Utils.sniffMimeType(mTsHeader, mTsHeader.length);
+    }
+}
@@ -0,0 +1,34 @@
+package io.gresse.hugo.simpleexoplayer.view;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aspect ratio math run by the video views on each measure pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AspectRatioBenchmark {
+
+    private static final float[] RATIOS = {16f / 9, 4f / 3, 1f, 9f / 16, 2.39f};
+
+    private final AspectRatioMeasurer mMeasurer = new AspectRatioMeasurer();
+
+    private int mIndex;
+
+    @Benchmark
+    public int measure() {
+        int index = mIndex++;
+        int width = 720 + (index & 0xFF);
+        int height = 1280 - (index & 0x7F);
+        mMeasurer.measure(width, height, RATIOS[index % RATIOS.length]);
+        return mMeasurer.getWidth() + mMeasurer.getHeight();
+    }
+}
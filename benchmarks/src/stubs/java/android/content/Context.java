@@ -0,0 +1,13 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Stub of the Android Context, only what the cache needs
+ */
+public abstract class Context {
+
+    public abstract Context getApplicationContext();
+
+    public abstract File getCacheDir();
+}
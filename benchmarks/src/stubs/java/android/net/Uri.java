@@ -0,0 +1,47 @@
+package android.net;
+
+/**
+ * Stub of the Android Uri, holding the string it was parsed from
+ */
+public final class Uri {
+
+    private final String mUriString;
+
+    private Uri(String uriString) {
+        mUriString = uriString;
+    }
+
+    public static Uri parse(String uriString) {
+        return new Uri(uriString);
+    }
+
+    public String getScheme() {
+        int index = mUriString.indexOf(':');
+        return index > 0 ? mUriString.substring(0, index) : null;
+    }
+
+    public String getLastPathSegment() {
+        int end = mUriString.length();
+        int query = mUriString.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int start = mUriString.lastIndexOf('/', end - 1) + 1;
+        return start < end ? mUriString.substring(start, end) : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Uri && mUriString.equals(((Uri) o).mUriString);
+    }
+
+    @Override
+    public int hashCode() {
+        return mUriString.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mUriString;
+    }
+}
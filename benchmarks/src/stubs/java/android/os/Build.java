@@ -0,0 +1,24 @@
+package android.os;
+
+/**
+ * Stub of the Android Build information, read by the ExoPlayer Util class
+ */
+public class Build {
+
+    public static final String DEVICE       = "jvm";
+    public static final String MANUFACTURER = "jvm";
+    public static final String MODEL        = "jvm";
+
+    public static class VERSION {
+        public static final int    SDK_INT  = 23;
+        public static final String CODENAME = "REL";
+        public static final String RELEASE  = "6.0";
+    }
+
+    public static class VERSION_CODES {
+        public static final int ICE_CREAM_SANDWICH = 14;
+        public static final int JELLY_BEAN         = 16;
+        public static final int LOLLIPOP           = 21;
+        public static final int M                  = 23;
+    }
+}
@@ -0,0 +1,57 @@
+package android.os;
+
+/**
+ * Functional stub of the Android ConditionVariable, used by the ExoPlayer cache
+ */
+public class ConditionVariable {
+
+    private volatile boolean mCondition;
+
+    public ConditionVariable() {
+        mCondition = false;
+    }
+
+    public ConditionVariable(boolean state) {
+        mCondition = state;
+    }
+
+    public synchronized void open() {
+        boolean old = mCondition;
+        mCondition = true;
+        if (!old) {
+            notifyAll();
+        }
+    }
+
+    public synchronized void close() {
+        mCondition = false;
+    }
+
+    public synchronized void block() {
+        while (!mCondition) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public synchronized boolean block(long timeout) {
+        long end = System.currentTimeMillis() + timeout;
+        while (!mCondition) {
+            long remaining = end - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return mCondition;
+    }
+}
@@ -0,0 +1,31 @@
+package android.os;
+
+/**
+ * Stub of the Android Handler: the messages are dropped, the benchmarks run the callbacks directly.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public final Looper getLooper() {
+        return Looper.getMainLooper();
+    }
+
+    public final boolean post(Runnable r) {
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+    }
+}
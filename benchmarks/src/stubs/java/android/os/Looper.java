@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * Stub of the Android Looper, there is a single main looper
+ */
+public final class Looper {
+
+    private static final Looper MAIN_LOOPER = new Looper();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN_LOOPER;
+    }
+
+    public static Looper myLooper() {
+        return MAIN_LOOPER;
+    }
+}
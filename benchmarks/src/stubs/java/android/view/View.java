@@ -0,0 +1,20 @@
+package android.view;
+
+/**
+ * Stub of the Android View, only its position and size
+ */
+public class View {
+
+    public void getLocationOnScreen(int[] location) {
+        location[0] = 0;
+        location[1] = 0;
+    }
+
+    public int getWidth() {
+        return 0;
+    }
+
+    public int getHeight() {
+        return 0;
+    }
+}
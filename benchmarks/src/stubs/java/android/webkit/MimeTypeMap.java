@@ -0,0 +1,68 @@
+package android.webkit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Stub of the Android MimeTypeMap with the media types the player handles. The extension
+ * extraction follows the Android implementation so the benchmarks measure the same work.
+ */
+public class MimeTypeMap {
+
+    private static final MimeTypeMap sMimeTypeMap = new MimeTypeMap();
+
+    private final Map<String, String> mExtensionToMimeType = new HashMap<>();
+
+    private MimeTypeMap() {
+        mExtensionToMimeType.put("mp4", "video/mp4");
+        mExtensionToMimeType.put("m4v", "video/mp4");
+        mExtensionToMimeType.put("m4a", "audio/mp4");
+        mExtensionToMimeType.put("webm", "video/webm");
+        mExtensionToMimeType.put("mkv", "video/x-matroska");
+        mExtensionToMimeType.put("ts", "video/mp2ts");
+        mExtensionToMimeType.put("m3u8", "application/x-mpegurl");
+        mExtensionToMimeType.put("mpd", "application/dash+xml");
+        mExtensionToMimeType.put("mp3", "audio/mpeg");
+        mExtensionToMimeType.put("aac", "audio/aac");
+        mExtensionToMimeType.put("ogg", "audio/ogg");
+    }
+
+    public static MimeTypeMap getSingleton() {
+        return sMimeTypeMap;
+    }
+
+    public static String getFileExtensionFromUrl(String url) {
+        if (url != null && url.length() > 0) {
+            int fragment = url.lastIndexOf('#');
+            if (fragment > 0) {
+                url = url.substring(0, fragment);
+            }
+
+            int query = url.lastIndexOf('?');
+            if (query > 0) {
+                url = url.substring(0, query);
+            }
+
+            int filenamePos = url.lastIndexOf('/');
+            String filename = 0 <= filenamePos ? url.substring(filenamePos + 1) : url;
+
+            // if the filename contains special characters, we don't consider it valid for our
+            // matching purposes:
+            if (!filename.isEmpty() && Pattern.matches("[a-zA-Z_0-9\\.\\-\\(\\)\\%]+", filename)) {
+                int dotPos = filename.lastIndexOf('.');
+                if (0 <= dotPos) {
+                    return filename.substring(dotPos + 1);
+                }
+            }
+        }
+        return "";
+    }
+
+    public String getMimeTypeFromExtension(String extension) {
+        if (extension == null || extension.isEmpty()) {
+            return null;
+        }
+        return mExtensionToMimeType.get(extension);
+    }
+}
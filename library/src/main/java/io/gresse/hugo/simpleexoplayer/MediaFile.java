@@ -14,6 +14,8 @@ public class MediaFile {
      * The mime type such as:
      * - video/mp4
      * - video/webm
+     * - application/x-mpegURL (HLS)
+     * - application/dash+xml (DASH)
      */
     public String type;
     public int width;
@@ -0,0 +1,96 @@
+package io.gresse.hugo.simpleexoplayer.cache;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import io.gresse.hugo.simpleexoplayer.MediaFile;
+
+/**
+ * An in memory cache of reduced resolution video frames, the last frame displayed or a poster of
+ * each media. They are shown while the video is decoded again, so a player re-attached to a new
+ * view does not show black in the meantime.
+ * <p/>
+ * The frames are keyed by media url and the least recently used ones are evicted once the cache
+ * size exceeds the given budget. A cached bitmap is never recycled, it may still be drawn.
+ */
+public class FrameCache {
+
+    public static final int DEFAULT_MAX_BYTES     = 4 * 1024 * 1024;
+    public static final int DEFAULT_MAX_DIMENSION = 360;
+
+    private static FrameCache sInstance;
+
+    private final LruCache<String, Bitmap> mCache;
+    private final int                      mMaxDimension;
+
+    /**
+     * Get the default cache, holding at most {@link #DEFAULT_MAX_BYTES} of frames whose largest
+     * side is {@link #DEFAULT_MAX_DIMENSION}
+     */
+    public static synchronized FrameCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new FrameCache(DEFAULT_MAX_BYTES, DEFAULT_MAX_DIMENSION);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxBytes     the maximum size of the cached bitmaps, in bytes
+     * @param maxDimension the maximum width and height of a captured frame, in pixels
+     */
+    public FrameCache(int maxBytes, int maxDimension) {
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+        mMaxDimension = maxDimension;
+    }
+
+    /**
+     * @return the largest side of a frame captured for this cache, in pixels
+     */
+    public int getMaxDimension() {
+        return mMaxDimension;
+    }
+
+    /**
+     * Get the size a frame of the given video size should be captured at, keeping its aspect ratio
+     *
+     * @return the width and height, at most {@link #getMaxDimension()}
+     */
+    public int[] getCaptureSize(int videoWidth, int videoHeight) {
+        float scale = Math.min(1f, (float) mMaxDimension / Math.max(videoWidth, videoHeight));
+        return new int[]{
+                Math.max(1, Math.round(videoWidth * scale)),
+                Math.max(1, Math.round(videoHeight * scale))
+        };
+    }
+
+    public void put(MediaFile mediaFile, Bitmap frame) {
+        if (mediaFile.mediaFileURL != null) {
+            mCache.put(mediaFile.mediaFileURL, frame);
+        }
+    }
+
+    @Nullable
+    public Bitmap get(MediaFile mediaFile) {
+        return mediaFile.mediaFileURL == null ? null : mCache.get(mediaFile.mediaFileURL);
+    }
+
+    public boolean contains(MediaFile mediaFile) {
+        return get(mediaFile) != null;
+    }
+
+    public void remove(MediaFile mediaFile) {
+        if (mediaFile.mediaFileURL != null) {
+            mCache.remove(mediaFile.mediaFileURL);
+        }
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+}
@@ -0,0 +1,166 @@
+package io.gresse.hugo.simpleexoplayer.cache;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.cache.Cache;
+import com.google.android.exoplayer.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer.upstream.cache.CacheSpan;
+import com.google.android.exoplayer.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer.upstream.cache.SimpleCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NavigableSet;
+
+/**
+ * A disk cache for media files. The bytes are stored in a directory as spans of at most
+ * {@link #getSpanSize()} bytes, and the least recently used spans are evicted once the cache size
+ * exceeds the given budget.
+ * <p/>
+ * Only one instance must exist for a given directory, use {@link #getInstance(Context)} to share
+ * the default one.
+ */
+public class MediaCache {
+
+    public static final String DEFAULT_DIRECTORY = "simpleexoplayer";
+    public static final long   DEFAULT_MAX_BYTES = 100 * 1024 * 1024;
+    public static final long   DEFAULT_SPAN_SIZE = 2 * 1024 * 1024;
+
+    private static MediaCache sInstance;
+
+    private final Cache mCache;
+    private final long  mMaxBytes;
+    private final long  mSpanSize;
+
+    /**
+     * Get the default cache, stored in the application cache directory.
+     *
+     * @param context any context
+     * @return the shared cache
+     */
+    public static synchronized MediaCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DEFAULT_DIRECTORY);
+            sInstance = new MediaCache(directory, DEFAULT_MAX_BYTES, DEFAULT_SPAN_SIZE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param directory the directory where the spans are stored, must not be used by another cache
+     * @param maxBytes  the maximum size of the cache, in bytes
+     * @param spanSize  the maximum size of a cached file, in bytes
+     */
+    public MediaCache(File directory, long maxBytes, long spanSize) {
+        mCache = new SimpleCache(directory, new LeastRecentlyUsedCacheEvictor(maxBytes));
+        mMaxBytes = maxBytes;
+        mSpanSize = spanSize;
+    }
+
+    /**
+     * Wrap the given data source so the data is read from the cache when available and written into
+     * it when read from the upstream source.
+     *
+     * @param upstream the data source used on cache miss
+     * @return a caching data source
+     */
+    public DataSource createDataSource(DataSource upstream) {
+        return new KeyedDataSource(new CacheDataSource(mCache, upstream, false, true, mSpanSize));
+    }
+
+    /**
+     * Get the number of bytes cached from the start of the given uri, without any hole.
+     *
+     * @param uri the media uri
+     * @return the contiguous cached length from position 0, in bytes
+     */
+    public long getCachedLength(Uri uri) {
+        NavigableSet<CacheSpan> spans = mCache.getCachedSpans(getCacheKey(uri));
+        if (spans == null) {
+            return 0;
+        }
+        long length = 0;
+        for (CacheSpan span : spans) {
+            if (span.position > length) {
+                break;
+            }
+            length = Math.max(length, span.position + span.length);
+        }
+        return length;
+    }
+
+    /**
+     * Remove all the spans of the given uri from the cache
+     *
+     * @param uri the media uri
+     */
+    public void remove(Uri uri) {
+        NavigableSet<CacheSpan> spans = mCache.getCachedSpans(getCacheKey(uri));
+        if (spans == null) {
+            return;
+        }
+        for (CacheSpan span : spans.toArray(new CacheSpan[spans.size()])) {
+            mCache.removeSpan(span);
+        }
+    }
+
+    /**
+     * @return the current cache size, in bytes
+     */
+    public long getCacheSpace() {
+        return mCache.getCacheSpace();
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public long getSpanSize() {
+        return mSpanSize;
+    }
+
+    /**
+     * Get the key used to store the given uri in the cache
+     *
+     * @param uri the media uri
+     * @return the cache key
+     */
+    public static String getCacheKey(Uri uri) {
+        return uri.toString();
+    }
+
+    /**
+     * The extractors open their {@link DataSpec} without key, which is required by the
+     * {@link CacheDataSource}. This set the uri as key when missing.
+     */
+    private static final class KeyedDataSource implements DataSource {
+
+        private final DataSource mDataSource;
+
+        KeyedDataSource(DataSource dataSource) {
+            mDataSource = dataSource;
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            if (dataSpec.key == null) {
+                dataSpec = new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition, dataSpec.position,
+                        dataSpec.length, getCacheKey(dataSpec.uri), dataSpec.flags);
+            }
+            return mDataSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            return mDataSource.read(buffer, offset, readLength);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDataSource.close();
+        }
+    }
+}
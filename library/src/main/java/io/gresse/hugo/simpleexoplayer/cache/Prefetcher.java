@@ -0,0 +1,210 @@
+package io.gresse.hugo.simpleexoplayer.cache;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.gresse.hugo.simpleexoplayer.MediaFile;
+
+/**
+ * Download the beginning of upcoming media files into a {@link MediaCache} on a bounded pool of
+ * background threads. Players using the same cache will then start from the prefetched data.
+ * <p/>
+ * Tasks with a higher priority are started first, tasks with the same priority are started in the
+ * order they have been added.
+ */
+public class Prefetcher {
+
+    private static final String LOG_TAG = Prefetcher.class.getSimpleName();
+
+    public static final int PRIORITY_LOW    = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH   = 2;
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Context                   mContext;
+    private final MediaCache                mMediaCache;
+    private final String                    mUserAgent;
+    private final ThreadPoolExecutor        mExecutor;
+    private final Map<String, PrefetchTask> mTasks;
+    private final AtomicLong                mSequence;
+
+    /**
+     * @param context     any context
+     * @param mediaCache  the cache to fill, shared with the players
+     * @param threadCount the maximum number of concurrent downloads
+     */
+    public Prefetcher(Context context, MediaCache mediaCache, int threadCount) {
+        mContext = context.getApplicationContext();
+        mMediaCache = mediaCache;
+        mUserAgent = Util.getUserAgent(mContext, "SimpleExoPlayer");
+        mTasks = new ConcurrentHashMap<>();
+        mSequence = new AtomicLong();
+        mExecutor = new ThreadPoolExecutor(threadCount, threadCount, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, LOG_TAG);
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Prefetch the first bytes of each given media file. A media already being prefetched is
+     * ignored.
+     *
+     * @param mediaFiles the media files, in the order they should be downloaded
+     * @param bytes      the number of bytes to download from the start of each media
+     * @param priority   one of the PRIORITY_* constants, or any int, greater is more urgent
+     */
+    public void prefetch(List<MediaFile> mediaFiles, long bytes, int priority) {
+        for (MediaFile mediaFile : mediaFiles) {
+            if (mTasks.containsKey(mediaFile.mediaFileURL)) {
+                continue;
+            }
+            PrefetchTask task = new PrefetchTask(mediaFile.getMediaFileURI(), bytes, priority,
+                    mSequence.getAndIncrement());
+            mTasks.put(mediaFile.mediaFileURL, task);
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Prefetch the first seconds of each given media file.
+     *
+     * @param mediaFiles the media files, in the order they should be downloaded
+     * @param durationMs the duration to download from the start of each media
+     * @param bitrate    the expected media bitrate, in bits per second
+     * @param priority   one of the PRIORITY_* constants, or any int, greater is more urgent
+     */
+    public void prefetchDuration(List<MediaFile> mediaFiles, long durationMs, long bitrate, int priority) {
+        prefetch(mediaFiles, durationMs * bitrate / 8000, priority);
+    }
+
+    /**
+     * Cancel the prefetch of the given media file, if any
+     *
+     * @param mediaFile the media file
+     */
+    public void cancel(MediaFile mediaFile) {
+        PrefetchTask task = mTasks.remove(mediaFile.mediaFileURL);
+        if (task != null) {
+            task.cancel();
+            mExecutor.remove(task);
+        }
+    }
+
+    /**
+     * Cancel all pending and running prefetches
+     */
+    public void cancelAll() {
+        for (PrefetchTask task : mTasks.values()) {
+            task.cancel();
+            mExecutor.remove(task);
+        }
+        mTasks.clear();
+    }
+
+    /**
+     * Cancel everything and stop the threads. The prefetcher should not be used after this.
+     */
+    public void release() {
+        cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Check if the given media file is waiting or being prefetched
+     *
+     * @param mediaFile the media file
+     * @return true if not yet completed
+     */
+    public boolean isPrefetching(MediaFile mediaFile) {
+        return mTasks.containsKey(mediaFile.mediaFileURL);
+    }
+
+    private final class PrefetchTask implements Runnable, Comparable<PrefetchTask> {
+
+        private final Uri  mUri;
+        private final long mLength;
+        private final int  mPriority;
+        private final long mSequence;
+
+        private volatile boolean mCanceled;
+
+        PrefetchTask(Uri uri, long length, int priority, long sequence) {
+            mUri = uri;
+            mLength = length;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        void cancel() {
+            mCanceled = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                download();
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Prefetch failed for " + mUri, e);
+            } finally {
+                mTasks.remove(mUri.toString(), this);
+            }
+        }
+
+        private void download() throws IOException {
+            long position = mMediaCache.getCachedLength(mUri);
+            if (mCanceled || position >= mLength) {
+                return;
+            }
+
+            DataSource dataSource = mMediaCache.createDataSource(
+                    new DefaultUriDataSource(mContext, mUserAgent));
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            try {
+                dataSource.open(new DataSpec(mUri, position, mLength - position,
+                        MediaCache.getCacheKey(mUri)));
+                while (!mCanceled && dataSource.read(buffer, 0, buffer.length) != C.RESULT_END_OF_INPUT) {
+                    // The cache data source write the bytes while they are read.
+                }
+            } finally {
+                dataSource.close();
+            }
+        }
+
+        @Override
+        public int compareTo(PrefetchTask another) {
+            if (mPriority != another.mPriority) {
+                return mPriority > another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+}
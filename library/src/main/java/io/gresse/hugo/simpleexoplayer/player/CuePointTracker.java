@@ -0,0 +1,150 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Notify when the playback crosses registered positions (cue points), like the quartiles of a
+ * video. Instead of polling, the next check is scheduled exactly when the player clock is expected
+ * to reach the next cue point, so a cue point is notified within a frame.
+ * <p/>
+ * A seek does not notify the cue points it jumps over: after a seek, only the cue points at or after
+ * the new position will be notified, including the ones already notified before a backward seek.
+ */
+public class CuePointTracker implements Runnable {
+
+    /**
+     * Give the current playback position
+     */
+    public interface Clock {
+        long getCurrentPosition();
+    }
+
+    public interface Listener {
+        /**
+         * Called when the playback crosses a cue point
+         *
+         * @param cuePointMs the cue point position, in milliseconds
+         * @param index      the index of the cue point in the sorted cue points
+         */
+        void onCuePoint(long cuePointMs, int index);
+    }
+
+    private final Handler mHandler;
+    private final Clock   mClock;
+
+    @Nullable
+    private Listener mListener;
+    private long[]   mCuePoints;
+    private int      mNextIndex;
+    private boolean  mRunning;
+
+    public CuePointTracker(Clock clock) {
+        mHandler = new Handler(Looper.getMainLooper());
+        mClock = clock;
+        mCuePoints = new long[0];
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Replace the cue points. Only the ones at or after the current position will be notified.
+     *
+     * @param cuePointsMs the positions, in milliseconds, in any order
+     */
+    public void setCuePoints(long... cuePointsMs) {
+        long[] cuePoints = Arrays.copyOf(cuePointsMs, cuePointsMs.length);
+        Arrays.sort(cuePoints);
+        mCuePoints = cuePoints;
+        onSeek(mClock.getCurrentPosition());
+    }
+
+    /**
+     * @return a copy of the sorted cue points
+     */
+    public long[] getCuePoints() {
+        return Arrays.copyOf(mCuePoints, mCuePoints.length);
+    }
+
+    /**
+     * Must be called when the player seeks, so the cue points jumped over are not notified and the
+     * ones after the new position are re-armed.
+     *
+     * @param positionMs the new playback position
+     */
+    public void onSeek(long positionMs) {
+        mNextIndex = lowerBound(mCuePoints, positionMs);
+        reschedule();
+    }
+
+    /**
+     * Notify all the cue points not notified yet up to the given position, then schedule the next
+     * check.
+     *
+     * @param positionMs the current playback position
+     */
+    public void update(long positionMs) {
+        while (mNextIndex < mCuePoints.length && mCuePoints[mNextIndex] <= positionMs) {
+            int index = mNextIndex++;
+            if (mListener != null) {
+                mListener.onCuePoint(mCuePoints[index], index);
+            }
+        }
+        reschedule();
+    }
+
+    /**
+     * Start tracking the player clock, to be called when the playback becomes active
+     */
+    public void resume() {
+        mRunning = true;
+        update(mClock.getCurrentPosition());
+    }
+
+    /**
+     * Stop tracking the player clock, to be called when the playback is paused, buffering or ended
+     */
+    public void pause() {
+        mRunning = false;
+        mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        if (mRunning) {
+            update(mClock.getCurrentPosition());
+        }
+    }
+
+    private void reschedule() {
+        mHandler.removeCallbacks(this);
+        if (!mRunning || mNextIndex >= mCuePoints.length) {
+            return;
+        }
+        long delayMs = mCuePoints[mNextIndex] - mClock.getCurrentPosition();
+        // Never spin on the main thread if the clock is a bit late
+        mHandler.postDelayed(this, Math.max(1, delayMs));
+    }
+
+    /**
+     * @return the index of the first cue point greater than or equal to the position
+     */
+    /* package */ static int lowerBound(long[] cuePoints, long positionMs) {
+        int low = 0;
+        int high = cuePoints.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cuePoints[middle] < positionMs) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
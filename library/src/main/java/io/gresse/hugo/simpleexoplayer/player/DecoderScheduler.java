@@ -0,0 +1,235 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Give the decoder slots to the players by priority. A device only has a few hardware decoders, and
+ * a player created once they are all used fails with a decoder initialization error. The scheduler
+ * lets at most {@link #getMaxDecoders()} players decode: the visible ones first, then the
+ * preloading ones, then the background ones. Within a priority, the player which got it last wins.
+ * <p/>
+ * A player losing its slot is told to free its decoders, and is told again when it gets a slot
+ * back. See {@link SimpleExoPlayer#setDecoderScheduler(DecoderScheduler)}.
+ * <p/>
+ * The scheduler is not thread safe and should only be used from the main thread, like the players.
+ */
+public class DecoderScheduler {
+
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_PRELOADING = 1;
+    public static final int PRIORITY_VISIBLE    = 2;
+
+    public static final int DEFAULT_MAX_DECODERS = 4;
+
+    /**
+     * A player using a decoder slot
+     */
+    public interface Client {
+        /**
+         * The client may create its decoders
+         */
+        void onDecoderGranted();
+
+        /**
+         * The client must free its decoders, a client with a higher priority needs the slot
+         */
+        void onDecoderRevoked();
+    }
+
+    private static final class Entry {
+        final Client client;
+        int     priority;
+        long    sequence;
+        boolean granted;
+        // True while the registration is scheduled, the client is not notified
+        boolean registering;
+
+        Entry(Client client, int priority, long sequence) {
+            this.client = client;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> PRIORITY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            if (lhs.priority != rhs.priority) {
+                return lhs.priority > rhs.priority ? -1 : 1;
+            }
+            return lhs.sequence > rhs.sequence ? -1 : (lhs.sequence == rhs.sequence ? 0 : 1);
+        }
+    };
+
+    private static DecoderScheduler sInstance;
+
+    private final ArrayList<Entry> mEntries;
+    // The entries sorted by priority, reused by each scheduling
+    private final ArrayList<Entry> mOrderedEntries;
+
+    private int     mMaxDecoders;
+    private long    mSequence;
+    private boolean mScheduling;
+    private boolean mScheduleAgain;
+
+    /**
+     * Get the process wide scheduler, with {@link #DEFAULT_MAX_DECODERS} slots
+     */
+    public static synchronized DecoderScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new DecoderScheduler(DEFAULT_MAX_DECODERS);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxDecoders the number of players allowed to decode at once
+     */
+    public DecoderScheduler(int maxDecoders) {
+        if (maxDecoders <= 0) {
+            throw new IllegalArgumentException("maxDecoders must be positive");
+        }
+        mMaxDecoders = maxDecoders;
+        mEntries = new ArrayList<>();
+        mOrderedEntries = new ArrayList<>();
+    }
+
+    public void setMaxDecoders(int maxDecoders) {
+        if (maxDecoders <= 0) {
+            throw new IllegalArgumentException("maxDecoders must be positive");
+        }
+        mMaxDecoders = maxDecoders;
+        schedule();
+    }
+
+    public int getMaxDecoders() {
+        return mMaxDecoders;
+    }
+
+    /**
+     * Ask a decoder slot for the given client. Other clients may be revoked to give it one.
+     * {@link Client#onDecoderGranted()} is not called for the registration itself.
+     *
+     * @param client   the client, not registered yet
+     * @param priority one of the PRIORITY_* constants
+     * @return true if the client got a slot, false if it must wait for
+     * {@link Client#onDecoderGranted()} before creating its decoders
+     */
+    public boolean register(Client client, int priority) {
+        if (findEntry(client) != null) {
+            throw new IllegalStateException("The client is already registered");
+        }
+        Entry entry = new Entry(client, priority, ++mSequence);
+        entry.granted = true;
+        entry.registering = true;
+        mEntries.add(entry);
+        schedule();
+        entry.registering = false;
+        return entry.granted;
+    }
+
+    /**
+     * Change the priority of a client, which may get or lose its slot
+     */
+    public void setPriority(Client client, int priority) {
+        Entry entry = findEntry(client);
+        if (entry == null || entry.priority == priority) {
+            return;
+        }
+        if (priority > entry.priority) {
+            // Promoted last, it wins over the clients already at this priority
+            entry.sequence = ++mSequence;
+        }
+        entry.priority = priority;
+        schedule();
+    }
+
+    /**
+     * Give the slot of the client back, to the waiting client with the highest priority if any
+     */
+    public void unregister(Client client) {
+        Entry entry = findEntry(client);
+        if (entry == null) {
+            return;
+        }
+        mEntries.remove(entry);
+        schedule();
+    }
+
+    public boolean isRegistered(Client client) {
+        return findEntry(client) != null;
+    }
+
+    public boolean isGranted(Client client) {
+        Entry entry = findEntry(client);
+        return entry != null && entry.granted;
+    }
+
+    /**
+     * @return the number of clients currently decoding
+     */
+    public int getGrantedCount() {
+        int count = 0;
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).granted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Entry findEntry(Client client) {
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (mEntries.get(i).client == client) {
+                return mEntries.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Give the slots to the clients with the highest priority. The slots are revoked before being
+     * granted, so the decoders are freed before new ones are created.
+     */
+    private void schedule() {
+        if (mScheduling) {
+            // Called back by a client, scheduled again once the current pass is done
+            mScheduleAgain = true;
+            return;
+        }
+        mScheduling = true;
+        try {
+            do {
+                mScheduleAgain = false;
+                mOrderedEntries.clear();
+                mOrderedEntries.addAll(mEntries);
+                Collections.sort(mOrderedEntries, PRIORITY_ORDER);
+
+                for (int i = mMaxDecoders; i < mOrderedEntries.size(); i++) {
+                    Entry entry = mOrderedEntries.get(i);
+                    if (entry.granted) {
+                        entry.granted = false;
+                        if (!entry.registering) {
+                            entry.client.onDecoderRevoked();
+                        }
+                    }
+                }
+                int granted = Math.min(mMaxDecoders, mOrderedEntries.size());
+                for (int i = 0; i < granted; i++) {
+                    Entry entry = mOrderedEntries.get(i);
+                    if (!entry.granted) {
+                        entry.granted = true;
+                        if (!entry.registering) {
+                            entry.client.onDecoderGranted();
+                        }
+                    }
+                }
+            } while (mScheduleAgain);
+        } finally {
+            mScheduling = false;
+            mOrderedEntries.clear();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+/**
+ * The {@link SimpleExoPlayerListener} of a player, each registered with the mask of the events it
+ * wants to receive.
+ * <p/>
+ * The listeners are kept in an array replaced on each registration change, and the events are
+ * dispatched with indexed loops over the current array, so dispatching an event never allocates.
+ * A listener can safely be added or removed while an event is dispatched.
+ */
+public class PlayerListenerList {
+
+    public static final int EVENT_LOADED                = 1;
+    public static final int EVENT_VIEW_ATTACHED         = 1 << 1;
+    public static final int EVENT_ERROR                 = 1 << 2;
+    public static final int EVENT_WILL_START_PLAYING    = 1 << 3;
+    public static final int EVENT_START_PLAYING         = 1 << 4;
+    public static final int EVENT_SURFACE_DESTROYED     = 1 << 5;
+    public static final int EVENT_FINISH_PLAYING        = 1 << 6;
+    public static final int EVENT_PROGRESS              = 1 << 7;
+    public static final int EVENT_ALL                   = 0xFF;
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private volatile Entry[] mEntries = EMPTY;
+
+    /**
+     * Register a listener for the given events. If already registered, its event mask is replaced.
+     *
+     * @param listener  the listener
+     * @param eventMask a combination of the EVENT_* flags
+     */
+    public synchronized void add(SimpleExoPlayerListener listener, int eventMask) {
+        Entry[] entries = mEntries;
+        int index = indexOf(entries, listener);
+        Entry[] newEntries;
+        if (index >= 0) {
+            newEntries = entries.clone();
+        } else {
+            index = entries.length;
+            newEntries = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        }
+        newEntries[index] = new Entry(listener, eventMask);
+        mEntries = newEntries;
+    }
+
+    /**
+     * Unregister the given listener, does nothing if not registered
+     */
+    public synchronized void remove(SimpleExoPlayerListener listener) {
+        Entry[] entries = mEntries;
+        int index = indexOf(entries, listener);
+        if (index < 0) {
+            return;
+        }
+        Entry[] newEntries = new Entry[entries.length - 1];
+        System.arraycopy(entries, 0, newEntries, 0, index);
+        System.arraycopy(entries, index + 1, newEntries, index, entries.length - index - 1);
+        mEntries = newEntries;
+    }
+
+    public synchronized void clear() {
+        mEntries = EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return mEntries.length == 0;
+    }
+
+    public void dispatchLoaded() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_LOADED) != 0) {
+                entries[i].listener.playerIsLoaded();
+            }
+        }
+    }
+
+    public void dispatchViewAttached() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_VIEW_ATTACHED) != 0) {
+                entries[i].listener.playerViewAttached();
+            }
+        }
+    }
+
+    public void dispatchError(Exception e) {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_ERROR) != 0) {
+                entries[i].listener.playerError(e);
+            }
+        }
+    }
+
+    public void dispatchWillStartPlaying() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_WILL_START_PLAYING) != 0) {
+                entries[i].listener.playerWillStartPlaying();
+            }
+        }
+    }
+
+    public void dispatchStartPlaying() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_START_PLAYING) != 0) {
+                entries[i].listener.playerStartPlaying();
+            }
+        }
+    }
+
+    public void dispatchSurfaceDestroyedShouldPause() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_SURFACE_DESTROYED) != 0) {
+                entries[i].listener.playerSurfaceDestroyedShouldPause();
+            }
+        }
+    }
+
+    public void dispatchFinishPlaying() {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_FINISH_PLAYING) != 0) {
+                entries[i].listener.playerFinishPlaying();
+            }
+        }
+    }
+
+    public void dispatchProgress(long milliSecond) {
+        Entry[] entries = mEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if ((entries[i].eventMask & EVENT_PROGRESS) != 0) {
+                entries[i].listener.playerPublishProgress(milliSecond);
+            }
+        }
+    }
+
+    private static int indexOf(Entry[] entries, SimpleExoPlayerListener listener) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].listener == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Entry {
+
+        final SimpleExoPlayerListener listener;
+        final int                     eventMask;
+
+        Entry(SimpleExoPlayerListener listener, int eventMask) {
+            this.listener = listener;
+            this.eventMask = eventMask;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import io.gresse.hugo.simpleexoplayer.player.base.BufferPolicy;
+import io.gresse.hugo.simpleexoplayer.player.base.DemoPlayer;
+
+/**
+ * A pool of reusable {@link DemoPlayer}. Instead of being released, a player given back to the pool
+ * is reset (stopped and detached from its surface) so its playback thread and its allocator can be
+ * reused for the next media. This avoids the creation cost of a new {@link DemoPlayer} when a lot of
+ * players are created and released, like in a scrolling feed.
+ * <p/>
+ * The pool is not thread safe and should only be used from the main thread, like the players.
+ */
+public class PlayerPool {
+
+    private static final String LOG_TAG = PlayerPool.class.getSimpleName();
+
+    private final int                    mMaxSize;
+    private final ArrayDeque<DemoPlayer> mIdlePlayers;
+
+    /**
+     * @param maxSize the maximum number of idle players kept by the pool, players given back when the
+     *                pool is full are released
+     */
+    public PlayerPool(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be positive or zero");
+        }
+        mMaxSize = maxSize;
+        mIdlePlayers = new ArrayDeque<>(maxSize);
+    }
+
+    /**
+     * Get an idle player from the pool, or create a new one if the pool is empty.
+     *
+     * @param rendererBuilder the renderer builder the player will be prepared with
+     * @return a player ready to be prepared
+     */
+    public DemoPlayer acquire(DemoPlayer.RendererBuilder rendererBuilder) {
+        return acquire(rendererBuilder, BufferPolicy.DEFAULT);
+    }
+
+    /**
+     * Get an idle player created with the given buffer policy from the pool, or create a new one if
+     * there is none.
+     *
+     * @param rendererBuilder the renderer builder the player will be prepared with
+     * @param bufferPolicy    the buffer policy of the player
+     * @return a player ready to be prepared
+     */
+    public DemoPlayer acquire(DemoPlayer.RendererBuilder rendererBuilder, BufferPolicy bufferPolicy) {
+        Iterator<DemoPlayer> iterator = mIdlePlayers.iterator();
+        while (iterator.hasNext()) {
+            DemoPlayer player = iterator.next();
+            if (player.getBufferPolicy().equals(bufferPolicy)) {
+                iterator.remove();
+                player.setRendererBuilder(rendererBuilder);
+                return player;
+            }
+        }
+        return new DemoPlayer(rendererBuilder, bufferPolicy);
+    }
+
+    /**
+     * Give back a player to the pool. The player is reset and should not be used by the caller
+     * anymore.
+     *
+     * @param player the player to recycle
+     */
+    public void release(DemoPlayer player) {
+        player.reset();
+        if (mIdlePlayers.size() < mMaxSize) {
+            mIdlePlayers.offerFirst(player);
+        } else {
+            Log.d(LOG_TAG, "Pool full, releasing player");
+            player.release();
+        }
+    }
+
+    /**
+     * Release all the idle players, the pool can still be used after this
+     */
+    public void clear() {
+        DemoPlayer player;
+        while ((player = mIdlePlayers.pollFirst()) != null) {
+            player.release();
+        }
+    }
+
+    /**
+     * @return the maximum number of idle players kept by the pool
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return the number of idle players currently in the pool
+     */
+    public int getIdleCount() {
+        return mIdlePlayers.size();
+    }
+}
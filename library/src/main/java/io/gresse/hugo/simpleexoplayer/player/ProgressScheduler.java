@@ -0,0 +1,106 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Publish the playback position at a fixed interval, only while the playback is active. It is
+ * paused as soon as the player is paused, buffering or ended so it never wakes up the main thread
+ * for nothing.
+ */
+public class ProgressScheduler implements Runnable {
+
+    public static final long DEFAULT_INTERVAL_MS = 500;
+
+    /**
+     * The player the position is read from and published to
+     */
+    public interface Target {
+        long getCurrentPosition();
+
+        void onProgress(long positionMs);
+    }
+
+    private final Handler mHandler;
+    private final Target  mTarget;
+
+    private long    mIntervalMs;
+    private long    mLastPosition;
+    private boolean mRunning;
+
+    public ProgressScheduler(Target target) {
+        mHandler = new Handler(Looper.getMainLooper());
+        mTarget = target;
+        mIntervalMs = DEFAULT_INTERVAL_MS;
+        mLastPosition = -1;
+    }
+
+    /**
+     * Change the interval between two progress events, applied from the next event
+     *
+     * @param intervalMs the interval in milliseconds, must be positive
+     */
+    public void setInterval(long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("The interval must be positive");
+        }
+        mIntervalMs = intervalMs;
+        if (mRunning) {
+            mHandler.removeCallbacks(this);
+            mHandler.postDelayed(this, mIntervalMs);
+        }
+    }
+
+    public long getInterval() {
+        return mIntervalMs;
+    }
+
+    /**
+     * Start or resume the publication, does nothing if already running
+     */
+    public void resume() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mHandler.postDelayed(this, mIntervalMs);
+    }
+
+    /**
+     * Pause the publication until {@link #resume()} is called
+     */
+    public void pause() {
+        mRunning = false;
+        mHandler.removeCallbacks(this);
+    }
+
+    /**
+     * Stop the publication and forget the last published position
+     */
+    public void stop() {
+        pause();
+        mLastPosition = -1;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void run() {
+        if (!mRunning) {
+            return;
+        }
+
+        long position = mTarget.getCurrentPosition();
+        if (position != mLastPosition) {
+            mLastPosition = position;
+            mTarget.onProgress(position);
+        }
+
+        // The target may have paused or stopped the scheduler from its callback
+        if (mRunning) {
+            mHandler.postDelayed(this, mIntervalMs);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.gresse.hugo.simpleexoplayer.MediaFile;
+import io.gresse.hugo.simpleexoplayer.cache.MediaCache;
+import io.gresse.hugo.simpleexoplayer.player.base.DashRendererBuilder;
+import io.gresse.hugo.simpleexoplayer.player.base.DemoPlayer;
+import io.gresse.hugo.simpleexoplayer.player.base.ExtractorRendererBuilder;
+import io.gresse.hugo.simpleexoplayer.player.base.HlsRendererBuilder;
+import io.gresse.hugo.simpleexoplayer.player.base.SniffingRendererBuilder;
+
+/**
+ * Map the media uri schemes and mime types to the {@link Factory} creating the
+ * {@link DemoPlayer.RendererBuilder} able to play them. The scheme is looked up first, so a custom
+ * scheme can override the builder of any type, then the mime type. When the {@link MediaFile} has
+ * no type, the container is sniffed from the first bytes of the media.
+ * <p/>
+ * Register your own factories on {@link #getDefault()} or on a new registry given to
+ * {@link SimpleExoPlayer#setRendererBuilderRegistry(RendererBuilderRegistry)}.
+ */
+public class RendererBuilderRegistry {
+
+    /**
+     * Create a {@link DemoPlayer.RendererBuilder} for a given media
+     */
+    public interface Factory {
+        DemoPlayer.RendererBuilder create(Context context,
+                                          String userAgent,
+                                          MediaFile mediaFile,
+                                          @Nullable MediaCache mediaCache);
+    }
+
+    public static final Factory EXTRACTOR_FACTORY = new Factory() {
+        @Override
+        public DemoPlayer.RendererBuilder create(Context context, String userAgent, MediaFile mediaFile,
+                                                 @Nullable MediaCache mediaCache) {
+            return new ExtractorRendererBuilder(context, userAgent, mediaFile.getMediaFileURI(), mediaCache);
+        }
+    };
+
+    public static final Factory HLS_FACTORY = new Factory() {
+        @Override
+        public DemoPlayer.RendererBuilder create(Context context, String userAgent, MediaFile mediaFile,
+                                                 @Nullable MediaCache mediaCache) {
+            return new HlsRendererBuilder(context, userAgent, mediaFile.mediaFileURL);
+        }
+    };
+
+    public static final Factory DASH_FACTORY = new Factory() {
+        @Override
+        public DemoPlayer.RendererBuilder create(Context context, String userAgent, MediaFile mediaFile,
+                                                 @Nullable MediaCache mediaCache) {
+            return new DashRendererBuilder(context, userAgent, mediaFile.mediaFileURL);
+        }
+    };
+
+    private static RendererBuilderRegistry sDefault;
+
+    private final HashMap<String, Factory> mSchemeFactories;
+    private final HashMap<String, Factory> mMimeTypeFactories;
+
+    /**
+     * Get the registry used by default by the players, containing the built-in factories
+     */
+    public static synchronized RendererBuilderRegistry getDefault() {
+        if (sDefault == null) {
+            sDefault = new RendererBuilderRegistry();
+            sDefault.registerDefaults();
+        }
+        return sDefault;
+    }
+
+    /**
+     * Create an empty registry, see {@link #registerDefaults()}
+     */
+    public RendererBuilderRegistry() {
+        mSchemeFactories = new HashMap<>();
+        mMimeTypeFactories = new HashMap<>();
+    }
+
+    /**
+     * Register the built-in extractor, HLS and DASH factories
+     */
+    public void registerDefaults() {
+        registerMimeType("video/mp4", EXTRACTOR_FACTORY);
+        registerMimeType("video/webm", EXTRACTOR_FACTORY);
+        registerMimeType("video/ext-mp4", EXTRACTOR_FACTORY);
+        registerMimeType("video/x-matroska", EXTRACTOR_FACTORY);
+        registerMimeType("video/mp2t", EXTRACTOR_FACTORY);
+        registerMimeType("audio/mp4", EXTRACTOR_FACTORY);
+        registerMimeType("audio/mpeg", EXTRACTOR_FACTORY);
+        registerMimeType("audio/ogg", EXTRACTOR_FACTORY);
+        registerMimeType("application/x-mpegurl", HLS_FACTORY);
+        registerMimeType("application/vnd.apple.mpegurl", HLS_FACTORY);
+        registerMimeType("application/dash+xml", DASH_FACTORY);
+    }
+
+    /**
+     * Register a factory for the given mime type, replacing any previous one
+     *
+     * @param mimeType the mime type, like "video/mp4", case insensitive
+     * @param factory  the factory
+     */
+    public synchronized void registerMimeType(String mimeType, Factory factory) {
+        mMimeTypeFactories.put(mimeType.toLowerCase(Locale.US), factory);
+    }
+
+    /**
+     * Register a factory for the given uri scheme, replacing any previous one
+     *
+     * @param scheme  the scheme, like "asset", case insensitive
+     * @param factory the factory
+     */
+    public synchronized void registerScheme(String scheme, Factory factory) {
+        mSchemeFactories.put(scheme.toLowerCase(Locale.US), factory);
+    }
+
+    /**
+     * Get the factory registered for the given mime type
+     *
+     * @param mimeType the mime type, may be null
+     * @return the factory, or null if none is registered
+     */
+    @Nullable
+    public synchronized Factory getMimeTypeFactory(@Nullable String mimeType) {
+        return mimeType == null ? null : mMimeTypeFactories.get(mimeType.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Get the factory registered for the given uri scheme
+     *
+     * @param scheme the scheme, may be null
+     * @return the factory, or null if none is registered
+     */
+    @Nullable
+    public synchronized Factory getSchemeFactory(@Nullable String scheme) {
+        return scheme == null ? null : mSchemeFactories.get(scheme.toLowerCase(Locale.US));
+    }
+
+    /**
+     * Create the renderer builder for the given media.
+     *
+     * @throws IllegalStateException if no factory match the media scheme or type
+     */
+    public DemoPlayer.RendererBuilder getRendererBuilder(final Context context,
+                                                         final String userAgent,
+                                                         final MediaFile mediaFile,
+                                                         @Nullable final MediaCache mediaCache)
+            throws IllegalStateException {
+        Factory factory = getSchemeFactory(mediaFile.getMediaFileURI().getScheme());
+        if (factory == null) {
+            factory = getMimeTypeFactory(mediaFile.type);
+        }
+        if (factory != null) {
+            return factory.create(context, userAgent, mediaFile, mediaCache);
+        }
+        if (mediaFile.type != null) {
+            throw new IllegalStateException("Unsupported type: " + mediaFile.type);
+        }
+
+        return new SniffingRendererBuilder(context, userAgent, mediaFile.getMediaFileURI(),
+                new SniffingRendererBuilder.Resolver() {
+                    @Nullable
+                    @Override
+                    public DemoPlayer.RendererBuilder resolve(@Nullable String mimeType) {
+                        Factory sniffedFactory = getMimeTypeFactory(mimeType);
+                        if (sniffedFactory == null) {
+                            return null;
+                        }
+                        return sniffedFactory.create(context, userAgent, mediaFile, mediaCache);
+                    }
+                });
+    }
+}
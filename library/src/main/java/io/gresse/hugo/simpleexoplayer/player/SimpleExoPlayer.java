@@ -1,16 +1,16 @@
 package io.gresse.hugo.simpleexoplayer.player;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
-import android.opengl.GLES20;
 import android.os.CountDownTimer;
-import android.os.Handler;
 import android.support.annotation.IdRes;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Surface;
+import android.view.SurfaceHolder;
 import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,18 +18,21 @@ import android.view.ViewGroup;
 import com.google.android.exoplayer.ExoPlayer;
 import com.google.android.exoplayer.util.Util;
 
-import java.util.concurrent.CopyOnWriteArrayList;
-
-import javax.microedition.khronos.egl.EGL10;
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.egl.EGLContext;
-import javax.microedition.khronos.egl.EGLDisplay;
-import javax.microedition.khronos.egl.EGLSurface;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import io.gresse.hugo.simpleexoplayer.MediaFile;
+import io.gresse.hugo.simpleexoplayer.cache.FrameCache;
+import io.gresse.hugo.simpleexoplayer.cache.MediaCache;
+import io.gresse.hugo.simpleexoplayer.player.base.BandwidthEstimator;
+import io.gresse.hugo.simpleexoplayer.player.base.BufferPolicy;
 import io.gresse.hugo.simpleexoplayer.player.base.DemoPlayer;
 import io.gresse.hugo.simpleexoplayer.player.base.EventLogger;
-import io.gresse.hugo.simpleexoplayer.player.base.ExtractorRendererBuilder;
+import io.gresse.hugo.simpleexoplayer.player.base.PlaybackMetrics;
+import io.gresse.hugo.simpleexoplayer.player.base.StartupTimings;
+import io.gresse.hugo.simpleexoplayer.view.AspectRatioSurfaceView;
 import io.gresse.hugo.simpleexoplayer.view.AspectRatioTextureView;
 
 /**
@@ -43,30 +46,89 @@ import io.gresse.hugo.simpleexoplayer.view.AspectRatioTextureView;
 public class SimpleExoPlayer implements
         VideoPlayer,
         DemoPlayer.Listener,
-        TextureView.SurfaceTextureListener {
+        TextureView.SurfaceTextureListener,
+        SurfaceHolder.Callback,
+        DecoderScheduler.Client {
 
     private static final String  LOG_TAG = SimpleExoPlayer.class.getSimpleName();
     private static       boolean DEBUG   = false;
 
+    private static String sUserAgent;
+
     protected Context mContext;
 
-    /**
-     * Note that only the first listener will received publishProgress event
-     */
-    @Nullable
-    protected CopyOnWriteArrayList<SimpleExoPlayerListener> mNativeSimpleExoPlayerListenerList;
+    protected PlayerListenerList mListenerList;
 
     @Nullable
     protected EventLogger mEventLogger;
     protected MediaFile   mMediaFile;
 
-    protected DemoPlayer mPlayer;
-    protected float      mVideoWidthHeightRatio;
+    @Nullable
+    protected List<MediaFile> mPlaylist;
+    protected int             mPlaylistIndex;
 
+    protected DemoPlayer   mPlayer;
+    @Nullable
+    protected DemoPlayer   mNextPlayer;
+    // The texture the next player draws its first frame on, given to the view at the switch
+    @Nullable
+    protected SurfaceTexture mNextSurfaceTexture;
+    // The ratio of the next media, decoded before it is the current one
+    protected float          mNextVideoWidthHeightRatio;
+    protected final DemoPlayer.Listener mNextPlayerListener = new DemoPlayer.Listener() {
+        @Override
+        public void onStateChanged(boolean playWhenReady, int playbackState) {
+        }
 
-    protected Handler mSeekHandler;
-    protected long    mLastPosition;
-    protected long    mPlayerPosition;
+        @Override
+        public void onError(Exception e) {
+            // The next media is loaded again when the current one ends, the error is reported then
+            Log.w(LOG_TAG, "Next media preparation failed", e);
+            releaseNextPlayer();
+        }
+
+        @Override
+        public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees,
+                                       float pixelWidthHeightRatio) {
+            mNextVideoWidthHeightRatio = ((float) width / height) * pixelWidthHeightRatio;
+        }
+    };
+    protected BufferPolicy mBufferPolicy;
+    protected float        mVideoWidthHeightRatio;
+    @Nullable
+    protected PlayerPool mPlayerPool;
+    @Nullable
+    protected MediaCache mMediaCache;
+    @Nullable
+    protected FrameCache mFrameCache;
+    protected boolean    mCapturePoster;
+    // The media whose poster is captured or was already cached
+    @Nullable
+    protected MediaFile  mPosterMediaFile;
+    // The media and position of the last frame saved, to not read back the same frame again
+    @Nullable
+    protected MediaFile  mSavedFrameMediaFile;
+    protected long       mSavedFramePositionMs;
+    @Nullable
+    protected DecoderScheduler mDecoderScheduler;
+    protected int              mDecoderPriority = DecoderScheduler.PRIORITY_VISIBLE;
+    // True while the inner player is released because the scheduler revoked its decoder slot
+    protected boolean          mSuspended;
+    protected boolean          mSuspendedPrepared;
+    protected float            mSuspendedVolume = 1f;
+    protected RendererBuilderRegistry mRendererBuilderRegistry = RendererBuilderRegistry.getDefault();
+    @Nullable
+    protected PlaybackMetrics.SessionListener mPlaybackMetricsListener;
+    @Nullable
+    protected StartupTimings                  mStartupTimings;
+    @Nullable
+    protected StartupTimings.Listener         mStartupTimingsListener;
+
+
+    protected ProgressScheduler mProgressScheduler;
+    protected CuePointTracker   mCuePointTracker;
+    protected boolean           mQuartileCuePoints;
+    protected long              mPlayerPosition;
 
     // The sound volume while not muted
     protected float          mSoundVolume;
@@ -79,10 +141,14 @@ public class SimpleExoPlayer implements
     protected boolean mHasStartedOnce         = false;
 
     protected AspectRatioTextureView mTextureView;
-    protected SurfaceTexture         mSavedSurfaceTexture;
-    protected boolean                mRequestNewAttach;
-    protected boolean                mLastTextureDestroyed;
-    protected boolean mAllowPlayInBackground = true;
+    // Set instead of mTextureView when the video is rendered through a SurfaceView
+    @Nullable
+    protected AspectRatioSurfaceView mSurfaceView;
+    // The texture the player draws on, the one kept for the next view and the handed off views
+    protected final SurfaceAttachState<SurfaceTexture> mSurfaceState = new SurfaceAttachState<>();
+    // The Surface wrapping each texture the player drew on, reused when it comes back to it
+    protected final Map<SurfaceTexture, Surface> mSurfaces = new HashMap<>();
+    protected boolean mAllowPlayInBackground = false;
 
 
     public SimpleExoPlayer(Context context, MediaFile mediaFile) {
@@ -92,12 +158,42 @@ public class SimpleExoPlayer implements
     public SimpleExoPlayer(Context context,
                            MediaFile mediaFile,
                            @Nullable SimpleExoPlayerListener nativeSimpleExoPlayerListener) {
+        this(context, mediaFile, nativeSimpleExoPlayerListener, null);
+    }
+
+    /**
+     * @param bufferPolicy how much the player should buffer, see {@link BufferPolicy} presets, or null
+     *                     to pick it from the {@link BandwidthEstimator} estimate
+     */
+    public SimpleExoPlayer(Context context,
+                           MediaFile mediaFile,
+                           @Nullable SimpleExoPlayerListener nativeSimpleExoPlayerListener,
+                           @Nullable BufferPolicy bufferPolicy) {
         mContext = context;
         mMediaFile = mediaFile;
-        mNativeSimpleExoPlayerListenerList = new CopyOnWriteArrayList<>();
+        mBufferPolicy = bufferPolicy;
+        mListenerList = new PlayerListenerList();
+        mProgressScheduler = new ProgressScheduler(new ProgressScheduler.Target() {
+            @Override
+            public long getCurrentPosition() {
+                return mPlayer == null ? 0 : mPlayer.getCurrentPosition();
+            }
+
+            @Override
+            public void onProgress(long positionMs) {
+                mListenerList.dispatchProgress(positionMs);
+                maybePrepareNextPlayer();
+            }
+        });
+        mCuePointTracker = new CuePointTracker(new CuePointTracker.Clock() {
+            @Override
+            public long getCurrentPosition() {
+                return mPlayer == null ? mPlayerPosition : mPlayer.getCurrentPosition();
+            }
+        });
 
         if (nativeSimpleExoPlayerListener != null) {
-            mNativeSimpleExoPlayerListenerList.add(nativeSimpleExoPlayerListener);
+            mListenerList.add(nativeSimpleExoPlayerListener, PlayerListenerList.EVENT_ALL);
         }
     }
 
@@ -109,42 +205,265 @@ public class SimpleExoPlayer implements
         DEBUG = debug;
     }
 
+    /**
+     * Set the pool used to get and recycle the inner player. Must be called before {@link #init()}.
+     *
+     * @param playerPool the pool, or null to create and release a new player each time
+     */
+    public void setPlayerPool(@Nullable PlayerPool playerPool) {
+        mPlayerPool = playerPool;
+    }
+
+    /**
+     * Set the disk cache the media is read from and written to. Must be called before {@link #init()}.
+     *
+     * @param mediaCache the cache, or null to always load the media from its source
+     */
+    public void setMediaCache(@Nullable MediaCache mediaCache) {
+        mMediaCache = mediaCache;
+    }
+
+    /**
+     * Set the cache the last frame displayed is saved to on {@link #release()}. When a surface is
+     * attached again, the saved frame is drawn on it until the video is decoded, instead of black.
+     * <p/>
+     * Saving a frame reads it back from the TextureView on the main thread, a synchronous GPU copy
+     * at the cache resolution. It is done on release, on handoff, when the surface is destroyed
+     * while playing in background and when the decoder slot is revoked, unless the cached frame is
+     * still the one displayed. Nothing is saved when rendering through a SurfaceView.
+     *
+     * @param frameCache    the cache, {@link FrameCache#getInstance()} to share it between the
+     *                      players, or null to not save any frame
+     * @param capturePoster true to also save the first frame displayed as soon as it is, if the
+     *                      cache has no frame of the media yet
+     */
+    public void setFrameCache(@Nullable FrameCache frameCache, boolean capturePoster) {
+        mFrameCache = frameCache;
+        mCapturePoster = capturePoster;
+    }
+
+    /**
+     * Set the scheduler giving this player a decoder slot. Must be called before {@link #init()}.
+     * When its slot is revoked, the player releases its inner player, or only its video decoder if
+     * it plays in background, and restores its state once it gets a slot back.
+     *
+     * @param decoderScheduler the scheduler, {@link DecoderScheduler#getInstance()} to share the
+     *                         slots with the other players, or null to always decode
+     */
+    public void setDecoderScheduler(@Nullable DecoderScheduler decoderScheduler) {
+        mDecoderScheduler = decoderScheduler;
+    }
+
+    /**
+     * Set the priority of this player for a decoder slot
+     *
+     * @param priority one of the DecoderScheduler.PRIORITY_* constants, visible by default
+     */
+    public void setDecoderPriority(int priority) {
+        mDecoderPriority = priority;
+        if (mDecoderScheduler != null) {
+            mDecoderScheduler.setPriority(this, priority);
+        }
+    }
+
+    /**
+     * Set the interval between two {@link SimpleExoPlayerListener#playerPublishProgress(long)}
+     * events. The events are only sent while the video is playing.
+     *
+     * @param intervalMs the interval in milliseconds, 500 by default
+     */
+    public void setProgressInterval(long intervalMs) {
+        mProgressScheduler.setInterval(intervalMs);
+    }
+
+    /**
+     * Set the positions at which {@link CuePointTracker.Listener#onCuePoint(long, int)} will be
+     * called. Replace any previous cue points.
+     *
+     * @param cuePointsMs the positions in milliseconds, in any order
+     */
+    public void setCuePoints(long... cuePointsMs) {
+        mQuartileCuePoints = false;
+        mCuePointTracker.setCuePoints(cuePointsMs);
+    }
+
+    /**
+     * Set cue points at 0, 25, 50, 75 and 100% of the media, as soon as its duration is known.
+     * Replace any previous cue points.
+     */
+    public void setQuartileCuePoints() {
+        mQuartileCuePoints = true;
+        mCuePointTracker.setCuePoints();
+        maybeSetQuartileCuePoints();
+    }
+
+    /**
+     * Set the listener notified when the playback crosses a cue point
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setCuePointListener(@Nullable CuePointTracker.Listener listener) {
+        mCuePointTracker.setListener(listener);
+    }
+
+    /**
+     * Set the listener receiving the quality of experience metrics of each played media, when it
+     * ends, is replaced or the player is released.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setPlaybackMetricsListener(@Nullable PlaybackMetrics.SessionListener listener) {
+        mPlaybackMetricsListener = listener;
+        if (mPlayer != null) {
+            mPlayer.getPlaybackMetrics().setSessionListener(listener);
+        }
+    }
+
+    /**
+     * Get the quality of experience metrics of the current media
+     *
+     * @return the metrics so far, or null if the player is not initialized
+     */
+    @Nullable
+    public PlaybackMetrics.Snapshot getPlaybackMetrics() {
+        return mPlayer == null ? null : mPlayer.getPlaybackMetrics().snapshot();
+    }
+
+    /**
+     * Set the listener notified with the startup phase timings of each media, when its first frame
+     * is displayed.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setStartupTimingsListener(@Nullable StartupTimings.Listener listener) {
+        mStartupTimingsListener = listener;
+        if (mStartupTimings != null) {
+            mStartupTimings.setListener(listener);
+        }
+    }
+
+    /**
+     * Get the startup phase timings of the current media, some phases may not be marked yet.
+     *
+     * @return the timings, or null if the player is not initialized or if the media was prepared
+     * in advance by the playlist
+     */
+    @Nullable
+    public StartupTimings getStartupTimings() {
+        return mStartupTimings;
+    }
+
+    /**
+     * Seek to the given position
+     *
+     * @param positionMs the position in milliseconds
+     */
+    public void seekTo(long positionMs) {
+        if (mPlayer == null) {
+            mPlayerPosition = positionMs;
+        } else {
+            mPlayer.seekTo(positionMs);
+        }
+        mCuePointTracker.onSeek(positionMs);
+    }
+
+    /**
+     * Set the registry giving the renderer builder for the media. Must be called before
+     * {@link #init()}.
+     *
+     * @param registry the registry, {@link RendererBuilderRegistry#getDefault()} by default
+     */
+    public void setRendererBuilderRegistry(RendererBuilderRegistry registry) {
+        mRendererBuilderRegistry = registry;
+    }
+
     /**
      * Init player
      */
     @Override
     public void init() {
         if (mPlayer == null) {
+            if (mDecoderScheduler != null && !mDecoderScheduler.isRegistered(this)
+                    && !mDecoderScheduler.register(this, mDecoderPriority)) {
+                // Initialized once a slot is granted
+                mSuspended = true;
+                return;
+            }
+            long initTimeNs = System.nanoTime();
             try {
-                mPlayer = new DemoPlayer(getRendererBuilder());
+                mPlayer = acquirePlayer(getRendererBuilder(mMediaFile));
             } catch (IllegalStateException e) {
-                if (mNativeSimpleExoPlayerListenerList != null) {
-                    for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                        listener.playerError(e);
-                    }
-                }
+                mListenerList.dispatchError(e);
                 return;
             }
-            mPlayer.addListener(this);
             mPlayer.seekTo(mPlayerPosition);
-            if(DEBUG){
-                try {
-                    mEventLogger = new EventLogger();
-                    mEventLogger.startSession();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                mPlayer.addListener(mEventLogger);
-                mPlayer.setInfoListener(mEventLogger);
-                mPlayer.setInternalErrorListener(mEventLogger);
-            }
+            setupPlayer();
+            startTimings(initTimeNs);
         }
     }
 
+    /**
+     * Load a new media in place of the current one. The inner player, with its playback thread and
+     * its buffers, and the attached surface are kept: only the renderers are rebuilt for the new
+     * media, so there is no re-attach and no new player to create. The playback continues if the
+     * player was playing.
+     * <p/>
+     * The decoders are not reused: the renderers of ExoPlayer r1 own their codec, so both the audio
+     * and the video codec are released and initialized again for the new media, even when its
+     * format is compatible. The decoder init latency is the same as with a new player.
+     * <p/>
+     * If the player has not been initialized yet, or has been released, it is initialized. Any
+     * playlist previously set is cleared.
+     *
+     * @param mediaFile the new media to play
+     */
+    public void load(MediaFile mediaFile) {
+        mPlaylist = null;
+        releaseNextPlayer();
+        loadMediaFile(mediaFile);
+    }
+
+    /**
+     * Play the given media files back to back. Once a media is buffered to its end, the next one is
+     * prepared by a second inner player, which takes over as soon as the current media ends.
+     * {@link SimpleExoPlayerListener#playerFinishPlaying()} is only called at the end of the last
+     * media.
+     * <p/>
+     * With a TextureView, the next player decodes its first frame in advance on a texture of its
+     * own, which replaces the one of the view at the switch: no decoder is created and nothing
+     * blocks in between. The audio of the next media still starts once the previous one ended, so
+     * the transition is not sample accurate. With a SurfaceView, which has a single surface, the
+     * video decoder of the next media is only created once the previous one detached from it.
+     * <p/>
+     * If the next media fails to prepare, it is loaded again at the switch and the error is
+     * reported then.
+     *
+     * @param mediaFiles the media files to play, at least one
+     */
+    public void setPlaylist(List<MediaFile> mediaFiles) {
+        if (mediaFiles.isEmpty()) {
+            throw new IllegalArgumentException("The playlist must contain at least one media");
+        }
+        releaseNextPlayer();
+        mPlaylist = new ArrayList<>(mediaFiles);
+        mPlaylistIndex = 0;
+        loadMediaFile(mPlaylist.get(0));
+    }
+
+    /**
+     * @return the index of the current media in the playlist, 0 if no playlist is set
+     */
+    public int getPlaylistIndex() {
+        return mPlaylistIndex;
+    }
+
     /**
      * Called when surface has changed (entering a new activity with a new layout eg). This will
      * attach the surface contained inside the viewGroup to the player. Also setting additional
      * listener on the given view.
+     * <p/>
+     * The view, or the view found with the given id, can also be an {@link AspectRatioSurfaceView}.
+     * The video is then rendered through a SurfaceView, which is cheaper than a TextureView.
      *
      * @param context             app context
      * @param view                the parent of the textureView
@@ -157,6 +476,14 @@ public class SimpleExoPlayer implements
                        @LayoutRes int textureViewLayoutId,
                        @IdRes int textureViewId) {
 
+        View surfaceView = view instanceof ViewGroup ? view.findViewById(textureViewId) : view;
+        if (surfaceView instanceof AspectRatioSurfaceView) {
+            mContext = context;
+            attachSurfaceView((AspectRatioSurfaceView) surfaceView);
+            return;
+        }
+        detachSurfaceView();
+
         if (mTextureView != null) {
             Log.d(LOG_TAG, "attach: removeTextureView");
             ViewGroup parent = (ViewGroup) mTextureView.getParent();
@@ -205,16 +532,24 @@ public class SimpleExoPlayer implements
 
         mTextureView.setSurfaceTextureListener(this);
 
-        if (mTextureView.mSurfaceAvailable) {
-            Log.d(LOG_TAG, "attach: Surface available : attachSurface");
-            mSavedSurfaceTexture = mTextureView.getSurfaceTexture();
-            attachSurfaceAndInit(mSavedSurfaceTexture);
-        } else if (mSavedSurfaceTexture != null && mLastTextureDestroyed) {
-            Log.d(LOG_TAG, "attach: Surface not available : set surface to TextureView");
-            mTextureView.setSurfaceTexture(mSavedSurfaceTexture);
-        } else {
-            Log.d(LOG_TAG, "attach: mRequestNewAttach");
-            mRequestNewAttach = true;
+        int action = mSurfaceState.attach(mTextureView.mSurfaceAvailable,
+                mTextureView.getSurfaceTexture());
+        switch (action) {
+            case SurfaceAttachState.ATTACH_NOW:
+                Log.d(LOG_TAG, "attach: Surface available : attachSurface");
+                attachSurfaceWithSavedFrame(mSurfaceState.getSavedSurface());
+                break;
+            case SurfaceAttachState.ATTACH_RESTORE_SAVED:
+                Log.d(LOG_TAG, "attach: Surface not available : set surface to TextureView");
+                mTextureView.setSurfaceTexture(mSurfaceState.getSavedSurface());
+                if (mPlayer != null && mPlayer.getBackgrounded()) {
+                    // The surface was detached from the player when entering background
+                    attachSurfaceAndInit(mSurfaceState.getSavedSurface());
+                }
+                break;
+            default:
+                Log.d(LOG_TAG, "attach: request new attach");
+                break;
         }
 
 //        mVideoWidthHeightRatio = (float) NumberUtils.round((float) 16 / 9, 3);
@@ -228,11 +563,125 @@ public class SimpleExoPlayer implements
         }
     }
 
+    /**
+     * Move the playback to another TextureView, for example from an inline view to a fullscreen one
+     * and back. Unlike {@link #attach(Context, View, int, int)}, no view is moved between parents
+     * and the player is not prepared again: the player keeps drawing on the current view until the
+     * surface of the target is available, then switches to it. The previous view keeps its surface,
+     * so handing the playback back to it does not wait for a new one.
+     * <p/>
+     * The switch is not seamless with this ExoPlayer version: changing the surface of the video
+     * renderer releases its codec and creates a new one, which only shows a frame from the next
+     * key frame. With a frame cache, the displayed frame is read back on the main thread and drawn
+     * on the target by the {@link SurfaceWorker} meanwhile, and the codec is attached once it is.
+     *
+     * @param target the view to draw on
+     */
+    public void handoff(AspectRatioTextureView target) {
+        if (target == mTextureView) {
+            return;
+        }
+        Log.d(LOG_TAG, "handoff to " + target);
+        detachSurfaceView();
+        // Shown on the target until the player draws on it
+        saveFrame();
+        mTextureView = target;
+        target.setSurfaceTextureListener(this);
+        if (mVideoWidthHeightRatio != 0) {
+            updateVideoRatio();
+        }
+        if (mSurfaceState.handoff(target.mSurfaceAvailable, target.getSurfaceTexture())) {
+            attachSurfaceWithSavedFrame(mSurfaceState.getSavedSurface());
+        }
+        // Otherwise switched in onSurfaceTextureAvailable
+    }
+
+    /**
+     * Render the video through the given SurfaceView. The TextureView attached before, if any, is
+     * not used anymore.
+     *
+     * @param surfaceView the view to draw on
+     */
+    protected void attachSurfaceView(AspectRatioSurfaceView surfaceView) {
+        if (mSurfaceView != surfaceView) {
+            detachSurfaceView();
+            surfaceView.getHolder().addCallback(this);
+            mSurfaceView = surfaceView;
+        }
+        mTextureView = null;
+        if (mPlayer != null && mSurfaceState.getPlayerSurface() != null) {
+            // The texture is released with its view, possibly before the SurfaceView surface is
+            // created: the decoder must stop drawing on it first
+            mPlayer.blockingClearSurface();
+        }
+        mSurfaceState.attachSurfaceView();
+        mSurfaceState.onPlayerDetached();
+
+        if (mVideoWidthHeightRatio != 0) {
+            updateVideoRatio();
+        }
+        if (surfaceView.isSurfaceAvailable()) {
+            mListenerList.dispatchViewAttached();
+            attachSurfaceViewSurface();
+        } else if (mAutoPlay) {
+            maybeStartPlayback();
+        }
+    }
+
+    /**
+     * Stop listening to the SurfaceView attached, if any, and detach the player from its surface:
+     * the destruction of the surface is not notified anymore
+     */
+    protected void detachSurfaceView() {
+        if (mSurfaceView != null) {
+            if (mPlayer != null && mPlayer.getSurface() == mSurfaceView.getHolder().getSurface()) {
+                // The next texture may not be available yet, the decoder must not keep drawing on
+                // a surface released with its view
+                mPlayer.blockingClearSurface();
+            }
+            mSurfaceView.getHolder().removeCallback(this);
+            mSurfaceView = null;
+        }
+        mSurfaceState.detachSurfaceView();
+    }
+
+    /**
+     * Attach the surface of the SurfaceView to the player, it must be available
+     */
+    protected void attachSurfaceViewSurface() {
+        if (mPlayer == null || mSurfaceView == null) {
+            return;
+        }
+        mPlayer.setSurfaceDisplayedDirectly(true);
+        mPlayer.setSurface(mSurfaceView.getHolder().getSurface());
+        if (mPlayer.getBackgrounded()) {
+            leaveBackground();
+        }
+        if (mAutoPlay) {
+            start();
+        }
+    }
+
+    /**
+     * @return true if the attached view has a surface to draw on
+     */
+    protected boolean isSurfaceAvailable() {
+        if (mSurfaceView != null) {
+            return mSurfaceView.isSurfaceAvailable();
+        }
+        return mTextureView != null && mTextureView.mSurfaceAvailable;
+    }
+
     /**
      * Pre load the video to begin buffering while video is not started
      */
     @Override
     public void preLoad() {
+        if (mPlayer == null) {
+            // Prepared once a decoder slot is granted
+            mSuspendedPrepared = mSuspended;
+            return;
+        }
         mPlayer.prepare();
     }
 
@@ -242,6 +691,10 @@ public class SimpleExoPlayer implements
     @Override
     public void start() {
         mAutoPlay = true;
+        if (mSuspended) {
+            // Started once a decoder slot is granted
+            return;
+        }
         maybeStartPlayback();
     }
 
@@ -251,7 +704,7 @@ public class SimpleExoPlayer implements
     @Override
     public void pause() {
         mAutoPlay = false;
-        if (!isReleased()) {
+        if (mPlayer != null) {
             mPlayer.setPlayWhenReady(false);
         }
     }
@@ -332,7 +785,7 @@ public class SimpleExoPlayer implements
 
     @Override
     public void restart() {
-        mPlayer.seekTo(0);
+        seekTo(0);
         mHasStartedOnce = false;
         maybeStartPlayback();
     }
@@ -360,16 +813,20 @@ public class SimpleExoPlayer implements
     @Override
     public void release() {
         mHasStartedOnce = false;
+        mProgressScheduler.stop();
+        mCuePointTracker.pause();
         if (mPlayer != null) {
             Log.v(LOG_TAG, "release");
-            mNativeSimpleExoPlayerListenerList = null;
+            mListenerList.clear();
             if (mSoundtransitionTimer != null) {
                 mSoundtransitionTimer.cancel();
             }
             mPlayerPosition = mPlayer.getCurrentPosition();
+            saveFrame();
             mPlayer.removeListener(this);
-            mPlayer.release();
+            recyclePlayer(mPlayer);
             mPlayer = null;
+            releaseNextPlayer();
             if(mEventLogger != null){
                 mEventLogger.endSession();
                 mEventLogger = null;
@@ -377,10 +834,21 @@ public class SimpleExoPlayer implements
         }
 
         if (mTextureView != null && mTextureView.getSurfaceTexture() != null) {
-            clearSurface(mTextureView.getSurfaceTexture());
+            // Cleared on the GL worker, the EGL setup is too slow for the main thread
+            SurfaceWorker.getInstance().clearSurface(mTextureView.getSurfaceTexture());
         }
 
-        mRequestNewAttach = mLastTextureDestroyed = false;
+        mSurfaceState.reset();
+        for (Surface surface : mSurfaces.values()) {
+            surface.release();
+        }
+        mSurfaces.clear();
+
+        mSuspended = false;
+        if (mDecoderScheduler != null) {
+            // Once the decoders are released, so the next player can create its own
+            mDecoderScheduler.unregister(this);
+        }
     }
 
     /**
@@ -390,12 +858,13 @@ public class SimpleExoPlayer implements
      */
     @Override
     public boolean isReleased() {
-        return mPlayer == null;
+        return mPlayer == null && !mSuspended;
     }
 
     /**
      * By default, the player will pause the video when the surface is destroyed, because the fragment or activity is
-     * paused.
+     * paused. If allowed to play in background, only the audio keeps playing: the video decoder and
+     * its buffers are released until a surface is attached again.
      *
      * @param playInBackground true if you want to keep the video playing when the surface is destroyed
      */
@@ -454,11 +923,17 @@ public class SimpleExoPlayer implements
      */
     @Override
     public void addPlayerListener(SimpleExoPlayerListener listener) {
-        if (mNativeSimpleExoPlayerListenerList == null) {
-            mNativeSimpleExoPlayerListenerList = new CopyOnWriteArrayList<>();
-        }
+        mListenerList.add(listener, PlayerListenerList.EVENT_ALL);
+    }
 
-        mNativeSimpleExoPlayerListenerList.add(listener);
+    /**
+     * Register a new player listener to be notified only of the given events.
+     *
+     * @param listener  the listener
+     * @param eventMask a combination of the {@link PlayerListenerList} EVENT_* flags
+     */
+    public void addPlayerListener(SimpleExoPlayerListener listener, int eventMask) {
+        mListenerList.add(listener, eventMask);
     }
 
     /**
@@ -468,9 +943,7 @@ public class SimpleExoPlayer implements
      */
     @Override
     public void removePlayerListener(SimpleExoPlayerListener listener) {
-        if (mNativeSimpleExoPlayerListenerList != null) {
-            mNativeSimpleExoPlayerListenerList.remove(listener);
-        }
+        mListenerList.remove(listener);
     }
 
     /**
@@ -478,7 +951,11 @@ public class SimpleExoPlayer implements
      */
     @Override
     public void updateVideoRatio() {
-        mTextureView.setVideoWidthHeightRatio(mVideoWidthHeightRatio);
+        if (mSurfaceView != null) {
+            mSurfaceView.setVideoWidthHeightRatio(mVideoWidthHeightRatio);
+        } else if (mTextureView != null) {
+            mTextureView.setVideoWidthHeightRatio(mVideoWidthHeightRatio);
+        }
     }
 
     /**
@@ -500,9 +977,246 @@ public class SimpleExoPlayer implements
     * Protected Methods
     */
 
+    /**
+     * Get a new inner player, from the pool if any
+     */
+    protected DemoPlayer acquirePlayer(DemoPlayer.RendererBuilder rendererBuilder) {
+        if (mPlayerPool != null) {
+            return mPlayerPool.acquire(rendererBuilder, getBufferPolicy());
+        }
+        return new DemoPlayer(rendererBuilder, getBufferPolicy());
+    }
+
+    /**
+     * @return the buffer policy given at construction, or the one matching the current bandwidth
+     * estimate. The saved estimate is read in background, so the first player may get the default.
+     */
+    protected BufferPolicy getBufferPolicy() {
+        if (mBufferPolicy != null) {
+            return mBufferPolicy;
+        }
+        return BufferPolicy.forBitrate(BandwidthEstimator.getInstance(mContext).getBitrateEstimate());
+    }
+
+    /**
+     * Release the given inner player, or give it back to the pool if any
+     */
+    protected void recyclePlayer(DemoPlayer player) {
+        if (mPlayerPool != null) {
+            mPlayerPool.release(player);
+        } else {
+            player.release();
+        }
+    }
+
+    /**
+     * Register this and the debug listeners on the current inner player
+     */
+    protected void setupPlayer() {
+        mPlayer.addListener(this);
+        mPlayer.getPlaybackMetrics().setSessionListener(mPlaybackMetricsListener);
+        if (DEBUG) {
+            try {
+                mEventLogger = new EventLogger();
+                mEventLogger.startSession();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            mPlayer.addListener(mEventLogger);
+            mPlayer.setInfoListener(mEventLogger);
+            mPlayer.setInternalErrorListener(mEventLogger);
+        }
+    }
+
+    /**
+     * Start measuring the startup of the current media
+     *
+     * @param initTimeNs the {@link System#nanoTime()} at which the load started
+     */
+    protected void startTimings(long initTimeNs) {
+        mStartupTimings = new StartupTimings();
+        mStartupTimings.setListener(mStartupTimingsListener);
+        mStartupTimings.mark(StartupTimings.PHASE_INIT, initTimeNs);
+        mPlayer.setStartupTimings(mStartupTimings);
+    }
+
+    protected void loadMediaFile(MediaFile mediaFile) {
+        mMediaFile = mediaFile;
+        mPlayerPosition = 0;
+        mIsReady = false;
+        mHasStartedOnce = false;
+        mRatioAlreadyCalculated = false;
+
+        if (mPlayer == null) {
+            if (!mSuspended) {
+                init();
+            }
+            return;
+        }
+
+        startTimings(System.nanoTime());
+        try {
+            mPlayer.setRendererBuilder(getRendererBuilder(mMediaFile));
+        } catch (IllegalStateException e) {
+            mListenerList.dispatchError(e);
+            return;
+        }
+        mPlayer.seekTo(0);
+        mCuePointTracker.onSeek(0);
+        if (mQuartileCuePoints) {
+            mCuePointTracker.setCuePoints();
+        }
+        mPlayer.prepare();
+    }
+
+    /**
+     * Prepare the next media of the playlist in a second player, once the current one is buffered
+     * to its end so they do not compete for the bandwidth. When rendering through a TextureView,
+     * the next player draws its first frame on a texture of its own, shown at the switch. It holds
+     * a second pair of decoders meanwhile.
+     */
+    protected void maybePrepareNextPlayer() {
+        if (mNextPlayer != null || mPlayer == null || mPlaylist == null
+                || mPlaylistIndex + 1 >= mPlaylist.size() || mPlayer.getBufferedPercentage() < 100) {
+            return;
+        }
+        try {
+            mNextPlayer = acquirePlayer(getRendererBuilder(mPlaylist.get(mPlaylistIndex + 1)));
+        } catch (IllegalStateException e) {
+            Log.w(LOG_TAG, "Cannot prepare next media, it will be loaded when needed", e);
+            return;
+        }
+        mNextPlayer.addListener(mNextPlayerListener);
+        mNextPlayer.setVolume(mPlayer.getVolume());
+        if (mSurfaceView == null && !mPlayer.getBackgrounded()) {
+            // Attached to the GL context of the view at the switch only, the first frame is
+            // drawn on it while paused
+            mNextSurfaceTexture = new SurfaceTexture(0);
+            mNextSurfaceTexture.detachFromGLContext();
+            mNextPlayer.setSurface(getSurface(mNextSurfaceTexture));
+        }
+        mNextPlayer.prepare();
+    }
+
+    /**
+     * Move to the next media of the playlist. The already prepared next player takes over: its
+     * texture, with the first frame drawn, replaces the one of the view, or otherwise it gets the
+     * surface of the current player once its decoder detached from it. If the next player failed,
+     * the media is loaded again in the current player.
+     */
+    protected void switchToNextPlayer() {
+        mPlaylistIndex++;
+        if (mNextPlayer != null && mNextPlayer.getPlaybackState() == ExoPlayer.STATE_IDLE) {
+            releaseNextPlayer();
+        }
+        if (mNextPlayer == null) {
+            loadMediaFile(mPlaylist.get(mPlaylistIndex));
+            return;
+        }
+
+        final DemoPlayer previousPlayer = mPlayer;
+        final boolean backgrounded = previousPlayer.getBackgrounded();
+        SurfaceTexture previousTexture = mSurfaceState.getPlayerSurface();
+        final SurfaceTexture nextTexture = mNextSurfaceTexture;
+        previousPlayer.removeListener(this);
+        mNextPlayer.removeListener(mNextPlayerListener);
+        if (mEventLogger != null) {
+            mEventLogger.endSession();
+            mEventLogger = null;
+        }
+
+        mPlayer = mNextPlayer;
+        mNextPlayer = null;
+        mNextSurfaceTexture = null;
+        // The next media was prepared in advance, its startup is not measurable
+        mStartupTimings = null;
+        mMediaFile = mPlaylist.get(mPlaylistIndex);
+        mPlayerPosition = 0;
+        mIsReady = false;
+        mRatioAlreadyCalculated = mNextVideoWidthHeightRatio != 0;
+        if (mRatioAlreadyCalculated) {
+            mVideoWidthHeightRatio = mNextVideoWidthHeightRatio;
+            updateVideoRatio();
+        }
+        mNextVideoWidthHeightRatio = 0;
+        mCuePointTracker.onSeek(0);
+        if (mQuartileCuePoints) {
+            mCuePointTracker.setCuePoints();
+        }
+        setupPlayer();
+        mPlayer.setPlayWhenReady(true);
+
+        // Not blocking, the previous decoder reached the end of the stream and draws no more
+        previousPlayer.setSurface(null);
+        if (nextTexture != null && previousTexture != null && mTextureView != null
+                && previousTexture == mTextureView.getSurfaceTexture()) {
+            // The view releases the previous texture
+            mTextureView.setSurfaceTexture(nextTexture);
+            mSurfaceState.onSurfaceReplaced(nextTexture);
+            releaseSurface(previousTexture);
+        } else {
+            final DemoPlayer nextPlayer = mPlayer;
+            mSurfaceState.onPlayerDetached();
+            // A surface is used by one decoder at a time, wait for the previous one to detach
+            previousPlayer.sendCallback(new Runnable() {
+                @Override
+                public void run() {
+                    if (mPlayer != nextPlayer) {
+                        // Recycled meanwhile, its decoder does not draw on the texture anymore
+                        if (nextTexture != null) {
+                            releaseTexture(nextTexture);
+                        }
+                        return;
+                    }
+                    if (nextTexture != null) {
+                        mPlayer.setSurface(null);
+                        releaseTextureAfter(mPlayer, nextTexture);
+                    }
+                    if (backgrounded) {
+                        mPlayer.setBackgrounded(true);
+                    } else {
+                        reattachSurface();
+                    }
+                }
+            });
+        }
+
+        recyclePlayer(previousPlayer);
+    }
+
+    /**
+     * Set the quartile cue points if requested and if the duration is known
+     */
+    protected void maybeSetQuartileCuePoints() {
+        if (!mQuartileCuePoints || mPlayer == null) {
+            return;
+        }
+        long duration = mPlayer.getDuration();
+        if (duration == ExoPlayer.UNKNOWN_TIME) {
+            return;
+        }
+        mCuePointTracker.setCuePoints(0, duration / 4, duration / 2, duration * 3 / 4, duration);
+    }
+
+    protected void releaseNextPlayer() {
+        if (mNextPlayer != null) {
+            mNextPlayer.removeListener(mNextPlayerListener);
+            if (mNextSurfaceTexture != null) {
+                // Not blocking, the texture is released once the decoder is detached from it
+                mNextPlayer.setSurface(null);
+                releaseTextureAfter(mNextPlayer, mNextSurfaceTexture);
+                mNextSurfaceTexture = null;
+            }
+            recyclePlayer(mNextPlayer);
+            mNextPlayer = null;
+            mNextVideoWidthHeightRatio = 0;
+        }
+    }
+
     protected void maybeStartPlayback() {
 
-        if (mTextureView == null || mTextureView.getSurfaceTexture() == null && mSavedSurfaceTexture != null) {
+        if (mSurfaceView == null
+                && (mTextureView == null || mTextureView.getSurfaceTexture() == null && mSurfaceState.getSavedSurface() != null)) {
             Log.d(LOG_TAG, "maybeStartPlayback mRequestNewAttach true : is attaching surface");
             mAutoPlay = true;
             return;
@@ -510,18 +1224,10 @@ public class SimpleExoPlayer implements
 
         if (!mHasStartedOnce) {
             mHasStartedOnce = true;
-            if (mNativeSimpleExoPlayerListenerList != null) {
-                for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                    listener.playerStartPlaying();
-                }
-            }
+            mListenerList.dispatchStartPlaying();
         }
 
-        if (mSeekHandler == null) {
-            startPlayerTimeListener();
-        }
-
-        if (!mTextureView.mSurfaceAvailable && mSavedSurfaceTexture == null && !mAllowPlayInBackground) {
+        if (!isSurfaceAvailable() && mSurfaceState.getSavedSurface() == null && !mAllowPlayInBackground) {
             Log.d(LOG_TAG, "Surface not available, format not allowed to play in background, cannot proceed");
             mAutoPlay = true;
             return;
@@ -543,56 +1249,232 @@ public class SimpleExoPlayer implements
         Log.d(LOG_TAG, "attachSurfaceAndInit willAutoPlay ? " + mAutoPlay);
 
         if (mPlayer != null && surfaceTexture != null) {
-            mRequestNewAttach = false;
-            mPlayer.setSurface(new Surface(surfaceTexture));
+            // A pending clear would hold the surface and fail the decoder connection
+            SurfaceWorker.getInstance().cancel(surfaceTexture);
+            // Displayed once the TextureView updates, see onSurfaceTextureUpdated
+            mPlayer.setSurfaceDisplayedDirectly(false);
+            mPlayer.setSurface(getSurface(surfaceTexture));
+            mSurfaceState.onPlayerAttached(surfaceTexture);
+            if (mPlayer.getBackgrounded()) {
+                leaveBackground();
+            }
             if (mAutoPlay) {
                 start();
             }
         }
     }
 
-
-    protected DemoPlayer.RendererBuilder getRendererBuilder() throws IllegalStateException {
-        String userAgent = Util.getUserAgent(mContext, "SimpleExoPlayer");
-        switch (mMediaFile.type) {
-            case "video/mp4":
-            case "video/webm":
-            case "video/ext-mp4":
-                return new ExtractorRendererBuilder(mContext, userAgent, mMediaFile.getMediaFileURI());
-            default:
-                throw new IllegalStateException("Unsupported type: " + mMediaFile.type);
+    /**
+     * Get the Surface wrapping the given texture, created on the first call
+     */
+    protected Surface getSurface(SurfaceTexture surfaceTexture) {
+        Surface surface = mSurfaces.get(surfaceTexture);
+        if (surface == null) {
+            surface = new Surface(surfaceTexture);
+            mSurfaces.put(surfaceTexture, surface);
         }
+        return surface;
+    }
+
+    /**
+     * @return the texture of the current TextureView, if any
+     */
+    @Nullable
+    protected SurfaceTexture getViewSurfaceTexture() {
+        return mTextureView == null ? null : mTextureView.getSurfaceTexture();
     }
 
     /**
-     * Check every second the current time of the player
+     * Release the Surface wrapping the given texture, once the texture is released
      */
-    protected void startPlayerTimeListener() {
-        mSeekHandler = new Handler();
-        final int delay = 500; //milliseconds
+    protected void releaseSurface(SurfaceTexture surfaceTexture) {
+        Surface surface = mSurfaces.remove(surfaceTexture);
+        if (surface != null) {
+            surface.release();
+        }
+    }
 
-        mLastPosition = 0;
+    /**
+     * Release a texture owned by the player, no decoder must draw on it anymore
+     */
+    protected void releaseTexture(SurfaceTexture surfaceTexture) {
+        releaseSurface(surfaceTexture);
+        surfaceTexture.release();
+    }
 
-        mSeekHandler.postDelayed(new Runnable() {
+    /**
+     * Release a texture owned by the player once the given player has handled the surface changes
+     * sent before, so its decoder does not draw on it anymore
+     */
+    protected void releaseTextureAfter(DemoPlayer player, final SurfaceTexture surfaceTexture) {
+        player.sendCallback(new Runnable() {
+            @Override
             public void run() {
+                releaseTexture(surfaceTexture);
+            }
+        });
+    }
 
-                if (mPlayer == null || mLastPosition == mPlayer.getCurrentPosition()) {
-                    mSeekHandler.postDelayed(this, delay);
-                    return;
-                }
+    /**
+     * Keep only the audio playing: the video track is disabled, which releases the video decoder and
+     * drops the buffered video samples. The surface is detached from the player.
+     */
+    protected void enterBackground() {
+        if (mPlayer == null || mPlayer.getBackgrounded()) {
+            return;
+        }
+        Log.d(LOG_TAG, "enterBackground: audio only");
+        saveFrame();
+        mPlayer.setBackgrounded(true);
+        mSurfaceState.onPlayerDetached();
+    }
+
+    /**
+     * Select the video track again after {@link #enterBackground()}, the surface must be attached
+     * first. The video samples were dropped, so the player seeks to the current position: the
+     * loading restarts from the previous keyframe instead of waiting for the video to catch up.
+     */
+    protected void leaveBackground() {
+        Log.d(LOG_TAG, "leaveBackground: video restored");
+        mPlayer.setBackgrounded(false);
+        mPlayer.seekTo(mPlayer.getCurrentPosition());
+    }
 
-                mLastPosition = mPlayer.getCurrentPosition();
 
-                if (mNativeSimpleExoPlayerListenerList != null &&
-                        !mNativeSimpleExoPlayerListenerList.isEmpty() &&
-                        mNativeSimpleExoPlayerListenerList.get(0) != null) {
-                    mNativeSimpleExoPlayerListenerList.get(0).playerPublishProgress(mPlayer.getCurrentPosition());
+    /**
+     * Attach a valid SurfaceTexture to the player, once the frame saved for the media, if any, is
+     * drawn on it. The frame is displayed until the player draws its first one.
+     *
+     * @param surfaceTexture the surface to attach to the player
+     */
+    protected void attachSurfaceWithSavedFrame(final SurfaceTexture surfaceTexture) {
+        Bitmap frame = mFrameCache == null || mPlayer == null
+                || surfaceTexture == mSurfaceState.getPlayerSurface()
+                ? null : mFrameCache.get(mMediaFile);
+        if (frame == null) {
+            attachSurfaceAndInit(surfaceTexture);
+            return;
+        }
+        SurfaceWorker.getInstance().drawBitmap(surfaceTexture, frame, new Runnable() {
+            @Override
+            public void run() {
+                // The surface may have been replaced or the player released in the meantime
+                if (surfaceTexture == mSurfaceState.getSavedSurface()) {
+                    attachSurfaceAndInit(surfaceTexture);
                 }
+            }
+        });
+    }
 
-                // rerun handler if next time to sent event is not the end
-                mSeekHandler.postDelayed(this, delay);
+    /**
+     * Save the frame currently displayed to the frame cache, if any and if the cached frame is not
+     * already this one, for example when paused
+     */
+    protected void saveFrame() {
+        if (mFrameCache == null || mMediaFile == null || mPlayer == null) {
+            return;
+        }
+        long positionMs = mPlayer.getCurrentPosition();
+        if (mSavedFrameMediaFile == mMediaFile && mSavedFramePositionMs == positionMs
+                && mFrameCache.contains(mMediaFile)) {
+            return;
+        }
+        Bitmap frame = captureFrame();
+        if (frame != null) {
+            mFrameCache.put(mMediaFile, frame);
+            mSavedFrameMediaFile = mMediaFile;
+            mSavedFramePositionMs = positionMs;
+        }
+    }
+
+    /**
+     * Capture the frame displayed by the TextureView at the frame cache resolution
+     *
+     * @return the frame, or null if the player did not draw any
+     */
+    @Nullable
+    protected Bitmap captureFrame() {
+        if (mFrameCache == null || mPlayer == null || !mPlayer.isDrawnToSurface()
+                || mTextureView == null || !mTextureView.isAvailable()
+                || mTextureView.getWidth() == 0 || mTextureView.getHeight() == 0) {
+            return null;
+        }
+        int[] size = mFrameCache.getCaptureSize(mTextureView.getWidth(), mTextureView.getHeight());
+        return mTextureView.getBitmap(size[0], size[1]);
+    }
+
+    /**
+     * Release the inner player but keep its state, to free its decoders until {@link #resume()}
+     */
+    protected void suspend() {
+        Log.d(LOG_TAG, "suspend: decoder slot revoked");
+        mSuspended = true;
+        mSuspendedPrepared = mPlayer.getPlaybackState() != ExoPlayer.STATE_IDLE;
+        mSuspendedVolume = mPlayer.getVolume();
+        mAutoPlay = mAutoPlay || mPlayer.getPlayWhenReady();
+        mPlayerPosition = mPlayer.getCurrentPosition();
+        mProgressScheduler.pause();
+        mCuePointTracker.pause();
+        saveFrame();
+        mPlayer.removeListener(this);
+        recyclePlayer(mPlayer);
+        mPlayer = null;
+        mSurfaceState.onPlayerDetached();
+        releaseNextPlayer();
+        if (mEventLogger != null) {
+            mEventLogger.endSession();
+            mEventLogger = null;
+        }
+    }
+
+    /**
+     * Create the inner player again after {@link #suspend()}, at the same position and in the same
+     * state, and attach it to the current surface if any
+     */
+    protected void resume() {
+        if (!mSuspended) {
+            return;
+        }
+        Log.d(LOG_TAG, "resume: decoder slot granted");
+        mSuspended = false;
+        init();
+        if (mPlayer == null) {
+            return;
+        }
+        mPlayer.setVolume(mIsMute ? 0f : mSuspendedVolume);
+        if (mSuspendedPrepared) {
+            mPlayer.prepare();
+        }
+        reattachSurface();
+        if (mAutoPlay) {
+            maybeStartPlayback();
+        }
+    }
+
+    /**
+     * Attach the surface of the current TextureView to the player, if available
+     */
+    protected void reattachSurface() {
+        if (mSurfaceView != null) {
+            if (mSurfaceView.isSurfaceAvailable()) {
+                attachSurfaceViewSurface();
             }
-        }, delay);
+        } else if (mTextureView != null && mTextureView.mSurfaceAvailable
+                && mSurfaceState.getSavedSurface() != null) {
+            attachSurfaceWithSavedFrame(mSurfaceState.getSavedSurface());
+        }
+    }
+
+    /**
+     * @param mediaFile the media to build the renderers of
+     */
+    protected DemoPlayer.RendererBuilder getRendererBuilder(MediaFile mediaFile) throws IllegalStateException {
+        if (sUserAgent == null) {
+            // Computing the user agent query the package manager, do it only once
+            sUserAgent = Util.getUserAgent(mContext, "SimpleExoPlayer");
+        }
+        String userAgent = sUserAgent;
+        return mRendererBuilderRegistry.getRendererBuilder(mContext, userAgent, mediaFile, mMediaCache);
     }
 
     /*----------------------------------------
@@ -601,60 +1483,132 @@ public class SimpleExoPlayer implements
 
     @Override
     public void onStateChanged(boolean playWhenReady, int playbackState) {
-        String stringState;
+        if (playWhenReady && playbackState == ExoPlayer.STATE_READY) {
+            mProgressScheduler.resume();
+            mCuePointTracker.resume();
+        } else {
+            mProgressScheduler.pause();
+            mCuePointTracker.pause();
+        }
+
         switch (playbackState) {
             case ExoPlayer.STATE_READY:
-                stringState = "STATE_READY";
                 // prevent multiple isReady event sending by sending only the first one
                 if (!mIsReady) {
                     mIsReady = true;
-                    if (mNativeSimpleExoPlayerListenerList != null) {
-                        for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                            listener.playerIsLoaded();
-                        }
-                    }
+                    mListenerList.dispatchLoaded();
+                    maybeSetQuartileCuePoints();
                 }
+                maybePrepareNextPlayer();
                 break;
             case ExoPlayer.STATE_ENDED:
-                stringState = "STATE_ENDED";
                 Log.d(LOG_TAG, "State Ended");
-                if (mNativeSimpleExoPlayerListenerList != null) {
-                    for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                        listener.playerFinishPlaying();
-                    }
+                // The last reported position may be slightly before the duration
+                mCuePointTracker.update(Long.MAX_VALUE);
+                if (mPlaylist != null && mPlaylistIndex + 1 < mPlaylist.size()) {
+                    switchToNextPlayer();
+                    break;
                 }
+                mListenerList.dispatchFinishPlaying();
                 // prevent Player for sending more than one finish playing event
 
                 break;
 
-            case ExoPlayer.STATE_IDLE:
-                stringState = "STATE_IDLE";
+            default:
                 break;
+        }
+        if (DEBUG) {
+            // Only build the state string when it is logged
+            Log.d(LOG_TAG, "Player state change: " + getStateString(playbackState));
+        }
+    }
+
+    private static String getStateString(int playbackState) {
+        switch (playbackState) {
+            case ExoPlayer.STATE_READY:
+                return "STATE_READY";
+            case ExoPlayer.STATE_ENDED:
+                return "STATE_ENDED";
+            case ExoPlayer.STATE_IDLE:
+                return "STATE_IDLE";
             case ExoPlayer.STATE_PREPARING:
-                stringState = "STATE_PREPARING";
-                break;
+                return "STATE_PREPARING";
             case ExoPlayer.STATE_BUFFERING:
-                stringState = "STATE_BUFFERING";
-                break;
+                return "STATE_BUFFERING";
             default:
-                stringState = "Unknown state";
-                break;
+                return "Unknown state";
         }
-        Log.d(LOG_TAG, "Player state change: " + stringState);
     }
 
     @Override
     public void onError(Exception e) {
         Log.e(LOG_TAG, "Playback failed", e);
-        if (mNativeSimpleExoPlayerListenerList != null) {
-            for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                listener.playerError(e);
-            }
-        }
+        mListenerList.dispatchError(e);
         this.release();
     }
 
 
+    /*----------------------------------------
+    * DecoderScheduler.Client
+    */
+
+    @Override
+    public void onDecoderGranted() {
+        if (mPlayer != null && mPlayer.getBackgrounded()) {
+            // The video is restored once a surface is attached
+            reattachSurface();
+            return;
+        }
+        resume();
+    }
+
+    @Override
+    public void onDecoderRevoked() {
+        if (mPlayer == null) {
+            return;
+        }
+        if (mDecoderPriority == DecoderScheduler.PRIORITY_BACKGROUND && mAllowPlayInBackground
+                && isPlaying()) {
+            // Only the video decoder is released, the audio keeps playing
+            enterBackground();
+            return;
+        }
+        suspend();
+    }
+
+    /*----------------------------------------
+    * SurfaceHolder.Callback
+    */
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        Log.d(LOG_TAG, "surfaceCreated");
+        mListenerList.dispatchViewAttached();
+        attachSurfaceViewSurface();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        Log.d(LOG_TAG, "surfaceDestroyed");
+        if (isPlaying() && mAllowPlayInBackground) {
+            enterBackground();
+            return;
+        }
+        if (isPlaying()) {
+            mListenerList.dispatchSurfaceDestroyedShouldPause();
+            pause();
+            mAutoPlay = true;
+        }
+        if (mPlayer != null) {
+            // The surface is released as soon as this method returns
+            mPlayer.blockingClearSurface();
+        }
+    }
+
     /*----------------------------------------
     * TextureView.SurfaceTextureListener
     */
@@ -663,15 +1617,14 @@ public class SimpleExoPlayer implements
     public void onSurfaceTextureAvailable(SurfaceTexture surfaceTexture, int width, int height) {
         Log.d(LOG_TAG, "onSurfaceTextureAvailable size=" + width + "x" + height + ", st=" + surfaceTexture);
 
-        mSavedSurfaceTexture = surfaceTexture;
-
-        if (mNativeSimpleExoPlayerListenerList != null && !mNativeSimpleExoPlayerListenerList.isEmpty()) {
-            for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                listener.playerViewAttached();
-            }
+        if (!mSurfaceState.onSurfaceAvailable(surfaceTexture, getViewSurfaceTexture())) {
+            // A view the playback was handed off from
+            return;
         }
 
-        attachSurfaceAndInit(surfaceTexture);
+        mListenerList.dispatchViewAttached();
+
+        attachSurfaceWithSavedFrame(surfaceTexture);
     }
 
     @Override
@@ -682,79 +1635,56 @@ public class SimpleExoPlayer implements
     public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
         Log.d(LOG_TAG, "onSurfaceTextureDestroyed");
 
-        mLastTextureDestroyed = true;
+        int action = mSurfaceState.onSurfaceDestroyed(surface, getViewSurfaceTexture());
+        if (action == SurfaceAttachState.DESTROYED_OTHER_VIEW) {
+            // A view the playback was handed off from, its texture is not used anymore
+            releaseSurface(surface);
+            return true;
+        }
 
-        if (mSavedSurfaceTexture != null && mRequestNewAttach) {
-            mTextureView.setSurfaceTexture(mSavedSurfaceTexture);
-            mRequestNewAttach = false;
+        if (action == SurfaceAttachState.DESTROYED_RESTORE_SAVED) {
+            mTextureView.setSurfaceTexture(mSurfaceState.getSavedSurface());
             if (mAutoPlay) {
                 Log.d(LOG_TAG, "call start after previous surface is destroy and new attached");
                 start();
             }
+        } else if (isPlaying() && mAllowPlayInBackground) {
+            Log.d(LOG_TAG, "onSurfaceTextureDestroyed continue in background");
+            enterBackground();
         } else if (isPlaying()) {
             Log.d(LOG_TAG, "onSurfaceTextureDestroyed Pause player");
 
-            if (mNativeSimpleExoPlayerListenerList != null && !isReleased()) {
-                for (SimpleExoPlayerListener listener : mNativeSimpleExoPlayerListenerList) {
-                    listener.playerSurfaceDestroyedShouldPause();
-                }
+            if (!isReleased()) {
+                mListenerList.dispatchSurfaceDestroyedShouldPause();
             }
             pause();
             mAutoPlay = true;
         }
 
-        return (mSavedSurfaceTexture == null);
+        boolean releaseTexture = mSurfaceState.getSavedSurface() == null;
+        if (releaseTexture) {
+            releaseSurface(surface);
+        }
+        return releaseTexture;
     }
 
     @Override
     public void onSurfaceTextureUpdated(SurfaceTexture surface) {
-
-    }
-
-    /**
-     * Clear the given surface Texture by attachign a GL context and clearing the surface.
-     *
-     * @param texture a valid SurfaceTexture
-     */
-    private void clearSurface(SurfaceTexture texture) {
-        if (texture == null) {
+        if (surface != mSurfaceState.getPlayerSurface()) {
+            // Drawn by the surface worker, or a view the playback was handed off from
             return;
         }
-
-        EGL10 egl = (EGL10) EGLContext.getEGL();
-        EGLDisplay display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
-        egl.eglInitialize(display, null);
-
-        int[] attribList = {
-                EGL10.EGL_RED_SIZE, 8,
-                EGL10.EGL_GREEN_SIZE, 8,
-                EGL10.EGL_BLUE_SIZE, 8,
-                EGL10.EGL_ALPHA_SIZE, 8,
-                EGL10.EGL_RENDERABLE_TYPE, EGL10.EGL_WINDOW_BIT,
-                EGL10.EGL_NONE, 0,      // placeholder for recordable [@-3]
-                EGL10.EGL_NONE
-        };
-        EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfigs = new int[1];
-        egl.eglChooseConfig(display, attribList, configs, configs.length, numConfigs);
-        EGLConfig config = configs[0];
-        EGLContext context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, new int[]{
-                12440, 2,
-                EGL10.EGL_NONE
-        });
-        EGLSurface eglSurface = egl.eglCreateWindowSurface(display, config, texture,
-                new int[]{
-                        EGL10.EGL_NONE
-                });
-
-        egl.eglMakeCurrent(display, eglSurface, eglSurface, context);
-        GLES20.glClearColor(0, 0, 0, 1);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-        egl.eglSwapBuffers(display, eglSurface);
-        egl.eglDestroySurface(display, eglSurface);
-        egl.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
-                EGL10.EGL_NO_CONTEXT);
-        egl.eglDestroyContext(display, context);
-        egl.eglTerminate(display);
+        // The surface is also updated when cleared, only a rendered frame completes the startup
+        if (mStartupTimings != null
+                && mStartupTimings.isMarked(StartupTimings.PHASE_FIRST_FRAME_RENDERED)) {
+            mStartupTimings.mark(StartupTimings.PHASE_FIRST_FRAME_DISPLAYED);
+        }
+        if (mCapturePoster && mFrameCache != null && mPosterMediaFile != mMediaFile
+                && mPlayer != null && mPlayer.isDrawnToSurface()) {
+            mPosterMediaFile = mMediaFile;
+            if (!mFrameCache.contains(mMediaFile)) {
+                saveFrame();
+            }
+        }
     }
 }
\ No newline at end of file
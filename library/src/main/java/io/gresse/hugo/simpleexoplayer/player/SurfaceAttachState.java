@@ -0,0 +1,216 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.support.annotation.Nullable;
+
+/**
+ * The surface bookkeeping of a {@link SimpleExoPlayer}: the surface the inner player draws on, the
+ * one kept to be given back to the next view, and which surface events come from a view the
+ * playback was handed off from. It decides, the player acts on the views.
+ * <p/>
+ * It has no view dependency, the surfaces are opaque tokens, the SurfaceTexture of the views in
+ * the player. Not thread safe, it is used from the main thread like the player.
+ *
+ * @param <S> the surface type
+ */
+public final class SurfaceAttachState<S> {
+
+    /**
+     * The surface of the view is available, attach it to the player
+     */
+    public static final int ATTACH_NOW           = 0;
+    /**
+     * The surface of the previous view was destroyed, give the saved one to the new view
+     */
+    public static final int ATTACH_RESTORE_SAVED = 1;
+    /**
+     * Wait for the surface of the view, or for the previous one to be destroyed
+     */
+    public static final int ATTACH_WAIT          = 2;
+
+    /**
+     * The surface of a view the playback was handed off from, release it
+     */
+    public static final int DESTROYED_OTHER_VIEW    = 0;
+    /**
+     * The surface of the previous view, give the saved one to the new view
+     */
+    public static final int DESTROYED_RESTORE_SAVED = 1;
+    /**
+     * The surface of the current view, or the one the player draws on
+     */
+    public static final int DESTROYED_CURRENT       = 2;
+
+    @Nullable
+    private S       mSavedSurface;
+    @Nullable
+    private S       mPlayerSurface;
+    private boolean mRequestNewAttach;
+    private boolean mLastSurfaceDestroyed;
+    // True while rendering through a SurfaceView, every texture then belongs to another view
+    private boolean mSurfaceViewMode;
+
+    /**
+     * A view is attached
+     *
+     * @param surfaceAvailable true if the view has its surface
+     * @param viewSurface      the surface of the view, if any
+     * @return one of the ATTACH_* actions
+     */
+    public int attach(boolean surfaceAvailable, @Nullable S viewSurface) {
+        mSurfaceViewMode = false;
+        if (surfaceAvailable) {
+            mSavedSurface = viewSurface;
+            return ATTACH_NOW;
+        }
+        if (mSavedSurface != null && mLastSurfaceDestroyed) {
+            return ATTACH_RESTORE_SAVED;
+        }
+        mRequestNewAttach = true;
+        return ATTACH_WAIT;
+    }
+
+    /**
+     * The playback is handed off to another view, the previous one keeps its surface
+     *
+     * @param targetAvailable true if the target view has its surface
+     * @param targetSurface   the surface of the target view, if any
+     * @return true if the target surface must be attached now, false to wait for it to be available
+     * or if the player already draws on it
+     */
+    public boolean handoff(boolean targetAvailable, @Nullable S targetSurface) {
+        mSurfaceViewMode = false;
+        mRequestNewAttach = false;
+        mLastSurfaceDestroyed = false;
+        if (targetAvailable && targetSurface != null && targetSurface != mPlayerSurface) {
+            mSavedSurface = targetSurface;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The video is rendered through a SurfaceView, the textures are not used anymore
+     */
+    public void attachSurfaceView() {
+        mSurfaceViewMode = true;
+        mSavedSurface = null;
+        mRequestNewAttach = false;
+        mLastSurfaceDestroyed = false;
+    }
+
+    /**
+     * The SurfaceView is not used anymore
+     */
+    public void detachSurfaceView() {
+        mSurfaceViewMode = false;
+    }
+
+    /**
+     * A surface became available
+     *
+     * @param currentViewSurface the surface of the current view, if any
+     * @return true if it is the surface of the current view, to attach to the player
+     */
+    public boolean onSurfaceAvailable(S surface, @Nullable S currentViewSurface) {
+        if (isOtherViewSurface(surface, currentViewSurface)) {
+            return false;
+        }
+        mSavedSurface = surface;
+        return true;
+    }
+
+    /**
+     * A surface was destroyed
+     *
+     * @param currentViewSurface the surface of the current view, if any
+     * @return one of the DESTROYED_* actions
+     */
+    public int onSurfaceDestroyed(S surface, @Nullable S currentViewSurface) {
+        if (surface != mPlayerSurface && isOtherViewSurface(surface, currentViewSurface)) {
+            return DESTROYED_OTHER_VIEW;
+        }
+        mLastSurfaceDestroyed = true;
+        if (mSavedSurface != null && mRequestNewAttach) {
+            mRequestNewAttach = false;
+            return DESTROYED_RESTORE_SAVED;
+        }
+        return DESTROYED_CURRENT;
+    }
+
+    /**
+     * @param currentViewSurface the surface of the current view, if any
+     * @return true if the surface belongs to a view other than the current one
+     */
+    public boolean isOtherViewSurface(S surface, @Nullable S currentViewSurface) {
+        if (mSurfaceViewMode) {
+            return true;
+        }
+        return currentViewSurface != null && currentViewSurface != surface;
+    }
+
+    /**
+     * The player now draws on the given surface
+     */
+    public void onPlayerAttached(S surface) {
+        mRequestNewAttach = false;
+        mPlayerSurface = surface;
+    }
+
+    /**
+     * The surface of the current view is replaced by the given one, which the player already draws
+     * on. The previous surface is released by the view.
+     */
+    public void onSurfaceReplaced(S surface) {
+        mSavedSurface = surface;
+        mPlayerSurface = surface;
+        mRequestNewAttach = false;
+        mLastSurfaceDestroyed = false;
+    }
+
+    /**
+     * The player does not draw on a texture anymore
+     */
+    public void onPlayerDetached() {
+        mPlayerSurface = null;
+    }
+
+    /**
+     * The player is released, the saved surface is kept for the next attach
+     */
+    public void reset() {
+        mPlayerSurface = null;
+        mRequestNewAttach = false;
+        mLastSurfaceDestroyed = false;
+    }
+
+    /**
+     * @return the surface given back to the next view, null if the destroyed surface can be
+     * released
+     */
+    @Nullable
+    public S getSavedSurface() {
+        return mSavedSurface;
+    }
+
+    /**
+     * @return the surface the player draws on, if any
+     */
+    @Nullable
+    public S getPlayerSurface() {
+        return mPlayerSurface;
+    }
+
+    /**
+     * @return true if the player waits for the surface of the current view
+     */
+    public boolean isRequestNewAttach() {
+        return mRequestNewAttach;
+    }
+
+    /**
+     * @return true if the last surface of the current view was destroyed
+     */
+    public boolean isLastSurfaceDestroyed() {
+        return mLastSurfaceDestroyed;
+    }
+}
@@ -0,0 +1,366 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGL11;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * A GL thread drawing on the video surfaces when no decoder does, for example to clear a surface
+ * once its player is released or to show a snapshot of the video until it is decoded. The EGL
+ * display, config and context are created once and kept for the life of the process, so a draw
+ * only costs a window surface creation and a swap, and it never runs on the caller thread.
+ */
+public final class SurfaceWorker {
+
+    private static final String LOG_TAG = SurfaceWorker.class.getSimpleName();
+
+    private static final int EGL_OPENGL_ES2_BIT         = 4;
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+    private static final String VERTEX_SHADER = ""
+            + "attribute vec4 aPosition;\n"
+            + "attribute vec2 aTexCoord;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "    gl_Position = aPosition;\n"
+            + "    vTexCoord = aTexCoord;\n"
+            + "}\n";
+
+    private static final String FRAGMENT_SHADER = ""
+            + "precision mediump float;\n"
+            + "uniform sampler2D uTexture;\n"
+            + "varying vec2 vTexCoord;\n"
+            + "void main() {\n"
+            + "    gl_FragColor = texture2D(uTexture, vTexCoord);\n"
+            + "}\n";
+
+    // A full surface triangle strip: x, y, s, t. The bitmap rows go top to bottom.
+    private static final float[] QUAD = {
+            -1, -1, 0, 1,
+            1, -1, 1, 1,
+            -1, 1, 0, 0,
+            1, 1, 1, 0
+    };
+
+    private static SurfaceWorker sInstance;
+
+    private final Handler mHandler;
+    private final Handler mMainHandler;
+    private final Object  mLock;
+
+    private EGL10      mEgl;
+    private EGLDisplay mDisplay;
+    private EGLConfig  mConfig;
+    private EGLContext mContext;
+    private EGLSurface mSurface = EGL10.EGL_NO_SURFACE;
+
+    // The bitmap drawing objects of the current context, 0 if not created yet
+    private int         mProgram;
+    private int         mTexture;
+    private FloatBuffer mQuad;
+
+    // The texture being drawn on the worker thread, guarded by mLock
+    private SurfaceTexture mCurrentTexture;
+    // The number of cancel() calls of each texture, guarded by mLock. A draw queued before the
+    // last cancel() of its texture is dropped.
+    private final Map<SurfaceTexture, Integer> mCancelCounts = new WeakHashMap<>();
+
+    /**
+     * Get the process wide worker, its thread is started on the first call
+     */
+    public static synchronized SurfaceWorker getInstance() {
+        if (sInstance == null) {
+            sInstance = new SurfaceWorker();
+        }
+        return sInstance;
+    }
+
+    private SurfaceWorker() {
+        HandlerThread thread = new HandlerThread("SimpleExoPlayer:SurfaceWorker");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mLock = new Object();
+    }
+
+    /**
+     * Queue a clear of the given texture to black. Returns immediately.
+     *
+     * @param texture the texture to clear, no decoder should be attached to it
+     */
+    public void clearSurface(final SurfaceTexture texture) {
+        if (texture == null) {
+            return;
+        }
+        post(texture, new Runnable() {
+            @Override
+            public void run() {
+                if (makeCurrent(texture)) {
+                    GLES20.glClearColor(0, 0, 0, 1);
+                    GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+                    swapAndRelease();
+                }
+            }
+        });
+    }
+
+    /**
+     * Queue a draw of the given bitmap over the whole texture. Returns immediately.
+     *
+     * @param texture    the texture to draw on, no decoder should be attached to it
+     * @param bitmap     the bitmap to draw, scaled to the texture size. It must not be recycled.
+     * @param onComplete called on the main thread once the bitmap is drawn or the draw failed, for
+     *                   example to attach a decoder to the texture, may be null
+     */
+    public void drawBitmap(final SurfaceTexture texture, final Bitmap bitmap,
+                           @Nullable final Runnable onComplete) {
+        if (texture == null) {
+            return;
+        }
+        post(texture, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (makeCurrent(texture)) {
+                        renderBitmap(bitmap);
+                        swapAndRelease();
+                    }
+                } finally {
+                    if (onComplete != null) {
+                        mMainHandler.post(onComplete);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the draws queued for the given texture and wait for the one in progress if any, so a
+     * decoder can be attached to it. Only one producer can be connected to a surface at a time.
+     * The dropped draws do not call their completion callback.
+     */
+    public void cancel(SurfaceTexture texture) {
+        if (texture == null) {
+            return;
+        }
+        mHandler.removeCallbacksAndMessages(texture);
+        synchronized (mLock) {
+            // A draw already dequeued but not started yet sees it and gives up
+            mCancelCounts.put(texture, getCancelCount(texture) + 1);
+            while (mCurrentTexture == texture) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void post(final SurfaceTexture texture, final Runnable draw) {
+        final int cancelCount;
+        synchronized (mLock) {
+            cancelCount = getCancelCount(texture);
+        }
+        // The texture is the token of the message, so the draws of a texture can be cancelled
+        mHandler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mLock) {
+                    if (getCancelCount(texture) != cancelCount) {
+                        return;
+                    }
+                    mCurrentTexture = texture;
+                }
+                try {
+                    draw.run();
+                } catch (RuntimeException e) {
+                    // The texture may have been released since the draw was queued
+                    Log.w(LOG_TAG, "Draw failed", e);
+                } finally {
+                    synchronized (mLock) {
+                        mCurrentTexture = null;
+                        mLock.notifyAll();
+                    }
+                }
+            }
+        }, texture, SystemClock.uptimeMillis());
+    }
+
+    private int getCancelCount(SurfaceTexture texture) {
+        Integer cancelCount = mCancelCounts.get(texture);
+        return cancelCount == null ? 0 : cancelCount;
+    }
+
+    /*----------------------------------------
+    * Worker thread
+    */
+
+    /**
+     * Create a window surface for the texture and make it current, creating the context if needed
+     *
+     * @return false if the texture cannot be drawn on
+     */
+    private boolean makeCurrent(SurfaceTexture texture) {
+        if (mContext == null && !initEgl()) {
+            return false;
+        }
+        mSurface = mEgl.eglCreateWindowSurface(mDisplay, mConfig, texture, new int[]{
+                EGL10.EGL_NONE
+        });
+        if (mSurface == null || mSurface == EGL10.EGL_NO_SURFACE) {
+            Log.w(LOG_TAG, "eglCreateWindowSurface failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+            mSurface = EGL10.EGL_NO_SURFACE;
+            return false;
+        }
+        if (!mEgl.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext)) {
+            Log.w(LOG_TAG, "eglMakeCurrent failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+            releaseSurface();
+            return false;
+        }
+        return true;
+    }
+
+    private void renderBitmap(Bitmap bitmap) {
+        if (mProgram == 0) {
+            initProgram();
+        }
+        int[] size = new int[1];
+        mEgl.eglQuerySurface(mDisplay, mSurface, EGL10.EGL_WIDTH, size);
+        int width = size[0];
+        mEgl.eglQuerySurface(mDisplay, mSurface, EGL10.EGL_HEIGHT, size);
+        GLES20.glViewport(0, 0, width, size[0]);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+
+        int position = GLES20.glGetAttribLocation(mProgram, "aPosition");
+        int texCoord = GLES20.glGetAttribLocation(mProgram, "aTexCoord");
+        mQuad.position(0);
+        GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, 16, mQuad);
+        GLES20.glEnableVertexAttribArray(position);
+        mQuad.position(2);
+        GLES20.glVertexAttribPointer(texCoord, 2, GLES20.GL_FLOAT, false, 16, mQuad);
+        GLES20.glEnableVertexAttribArray(texCoord);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(mProgram, "uTexture"), 0);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    private void initProgram() {
+        mProgram = GLES20.glCreateProgram();
+        GLES20.glAttachShader(mProgram, loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(mProgram, loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(mProgram);
+
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        mTexture = textures[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        if (mQuad == null) {
+            mQuad = ByteBuffer.allocateDirect(QUAD.length * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            mQuad.put(QUAD);
+        }
+    }
+
+    private static int loadShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        return shader;
+    }
+
+    private void swapAndRelease() {
+        if (!mEgl.eglSwapBuffers(mDisplay, mSurface)
+                && mEgl.eglGetError() == EGL11.EGL_CONTEXT_LOST) {
+            // Recreated on the next draw
+            releaseSurface();
+            releaseEgl();
+            return;
+        }
+        releaseSurface();
+    }
+
+    private void releaseSurface() {
+        mEgl.eglMakeCurrent(mDisplay, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE,
+                EGL10.EGL_NO_CONTEXT);
+        mEgl.eglDestroySurface(mDisplay, mSurface);
+        mSurface = EGL10.EGL_NO_SURFACE;
+    }
+
+    private boolean initEgl() {
+        mEgl = (EGL10) EGLContext.getEGL();
+        mDisplay = mEgl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+        if (!mEgl.eglInitialize(mDisplay, null)) {
+            Log.w(LOG_TAG, "eglInitialize failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+            return false;
+        }
+
+        int[] attribList = {
+                EGL10.EGL_RED_SIZE, 8,
+                EGL10.EGL_GREEN_SIZE, 8,
+                EGL10.EGL_BLUE_SIZE, 8,
+                EGL10.EGL_ALPHA_SIZE, 8,
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!mEgl.eglChooseConfig(mDisplay, attribList, configs, configs.length, numConfigs)
+                || numConfigs[0] == 0) {
+            Log.w(LOG_TAG, "eglChooseConfig failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+            mEgl.eglTerminate(mDisplay);
+            return false;
+        }
+        mConfig = configs[0];
+        mContext = mEgl.eglCreateContext(mDisplay, mConfig, EGL10.EGL_NO_CONTEXT, new int[]{
+                EGL_CONTEXT_CLIENT_VERSION, 2,
+                EGL10.EGL_NONE
+        });
+        if (mContext == null || mContext == EGL10.EGL_NO_CONTEXT) {
+            Log.w(LOG_TAG, "eglCreateContext failed: 0x" + Integer.toHexString(mEgl.eglGetError()));
+            mContext = null;
+            mEgl.eglTerminate(mDisplay);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseEgl() {
+        mEgl.eglDestroyContext(mDisplay, mContext);
+        mEgl.eglTerminate(mDisplay);
+        mContext = null;
+        // Destroyed with the context
+        mProgram = 0;
+        mTexture = 0;
+    }
+}
@@ -0,0 +1,260 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriDataSource;
+import com.google.android.exoplayer.util.SlidingPercentile;
+
+/**
+ * A process wide bandwidth estimate, fed by the transfers of all the players. The samples are
+ * combined with a sliding window percentile, like {@link DefaultBandwidthMeter} does for a single
+ * player, but the estimate outlives the players.
+ * <p/>
+ * The last estimate is saved for each network type, so a new player on a known network starts with
+ * an estimate instead of none: the adaptive streams pick their first format from it and
+ * {@link BufferPolicy#forBitrate(long)} sizes the buffer from it. The saved estimate is read in
+ * background, there is no estimate until then.
+ * <p/>
+ * Only network transfers must be measured, a local file read would inflate the estimate: see
+ * {@link #createDataSource(Context, String, BandwidthMeter)}.
+ */
+public final class BandwidthEstimator {
+
+    public static final long  NO_ESTIMATE        = BandwidthMeter.NO_ESTIMATE;
+    public static final int   DEFAULT_MAX_WEIGHT = 2000;
+    public static final float DEFAULT_PERCENTILE = 0.5f;
+
+    private static final String PREFERENCES_NAME     = "simpleexoplayer_bandwidth";
+    private static final String KEY_PREFIX           = "bitrate_";
+    private static final long   PERSIST_INTERVAL_MS  = 10000;
+    private static final String NETWORK_UNKNOWN      = "unknown";
+
+    private static BandwidthEstimator sInstance;
+
+    private final Context             context;
+    private final ConnectivityManager connectivityManager;
+    private final int                 maxWeight;
+    private final float               percentile;
+    private final Runnable            refreshNetworkRunnable;
+
+    // Set in background, along with networkKey, as loading the preferences blocks
+    private SharedPreferences preferences;
+
+    private SlidingPercentile slidingPercentile;
+    private String            networkKey;
+    private long              seedEstimate;
+    private long              bitrateEstimate;
+    private long              lastPersistTimeMs;
+
+    /**
+     * Get the process wide estimator
+     *
+     * @param context any context
+     */
+    public static synchronized BandwidthEstimator getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BandwidthEstimator(context.getApplicationContext(), DEFAULT_MAX_WEIGHT,
+                    DEFAULT_PERCENTILE);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param maxWeight  the total weight of the samples kept in the sliding window
+     * @param percentile the percentile of the samples used as estimate, 0.5 for the median
+     */
+    public BandwidthEstimator(Context context, int maxWeight, float percentile) {
+        this.context = context;
+        this.connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.maxWeight = maxWeight;
+        this.percentile = percentile;
+        this.refreshNetworkRunnable = new Runnable() {
+            @Override
+            public void run() {
+                refreshNetwork();
+            }
+        };
+        slidingPercentile = new SlidingPercentile(maxWeight);
+        seedEstimate = BandwidthMeter.NO_ESTIMATE;
+        bitrateEstimate = BandwidthMeter.NO_ESTIMATE;
+        RendererBuilderExecutor.submit(refreshNetworkRunnable);
+    }
+
+    /**
+     * Create the data source of a player, measured by the given meter. Only the HTTP transfers are
+     * measured, not the reads of local files, assets or content uris.
+     *
+     * @param meter the meter of the player, see {@link #newMeter}
+     */
+    public static UriDataSource createDataSource(Context context, String userAgent,
+                                                 BandwidthMeter meter) {
+        return new DefaultUriDataSource(context, null,
+                new DefaultHttpDataSource(userAgent, null, meter));
+    }
+
+    /**
+     * Create a meter for a player. It measures the transfers of the player, adds them to this
+     * estimator and reports the samples to the given listener. The network is checked again in
+     * background.
+     *
+     * @param eventHandler  the handler the listener is called on
+     * @param eventListener the listener of the samples, may be null
+     */
+    public Meter newMeter(Handler eventHandler, DefaultBandwidthMeter.EventListener eventListener) {
+        RendererBuilderExecutor.submit(refreshNetworkRunnable);
+        return new Meter(eventHandler, eventListener);
+    }
+
+    /**
+     * @return the estimate in bits per second, the saved one for the current network if no transfer
+     * happened yet, or {@link BandwidthMeter#NO_ESTIMATE}
+     */
+    public synchronized long getBitrateEstimate() {
+        return bitrateEstimate;
+    }
+
+    /**
+     * Check if the network changed. If so the samples of the previous network are dropped and the
+     * estimate saved for the new one is used. Blocks on the preferences file the first time, so it
+     * must not be called on the main thread.
+     */
+    public void refreshNetwork() {
+        String currentNetworkKey = getNetworkKey();
+        synchronized (this) {
+            if (currentNetworkKey.equals(networkKey)) {
+                return;
+            }
+        }
+        // Read out of the lock, getBitrateEstimate() must not wait for the disk
+        SharedPreferences loadedPreferences =
+                context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        long savedEstimate =
+                loadedPreferences.getLong(KEY_PREFIX + currentNetworkKey, BandwidthMeter.NO_ESTIMATE);
+        synchronized (this) {
+            if (currentNetworkKey.equals(networkKey)) {
+                return;
+            }
+            if (networkKey != null) {
+                persist();
+                slidingPercentile = new SlidingPercentile(maxWeight);
+                bitrateEstimate = savedEstimate;
+            } else if (bitrateEstimate == BandwidthMeter.NO_ESTIMATE) {
+                // Keep the samples measured before the saved estimate was read, if any
+                bitrateEstimate = savedEstimate;
+            }
+            preferences = loadedPreferences;
+            networkKey = currentNetworkKey;
+            seedEstimate = savedEstimate;
+        }
+    }
+
+    private synchronized long addSample(long bytes, int elapsedMs) {
+        float bitsPerSecond = bytes * 8000f / elapsedMs;
+        slidingPercentile.addSample((int) Math.sqrt(bytes), bitsPerSecond);
+        float estimate = slidingPercentile.getPercentile(percentile);
+        bitrateEstimate = Float.isNaN(estimate) ? seedEstimate : (long) estimate;
+
+        long nowMs = SystemClock.elapsedRealtime();
+        if (nowMs - lastPersistTimeMs >= PERSIST_INTERVAL_MS) {
+            lastPersistTimeMs = nowMs;
+            persist();
+        }
+        return bitrateEstimate;
+    }
+
+    private void persist() {
+        if (networkKey != null && bitrateEstimate != BandwidthMeter.NO_ESTIMATE) {
+            preferences.edit().putLong(KEY_PREFIX + networkKey, bitrateEstimate).apply();
+        }
+    }
+
+    private String getNetworkKey() {
+        NetworkInfo networkInfo = connectivityManager == null
+                ? null : connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null) {
+            return NETWORK_UNKNOWN;
+        }
+        if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
+            // 2G, 3G and LTE have nothing in common
+            return networkInfo.getType() + "_" + networkInfo.getSubtype();
+        }
+        return String.valueOf(networkInfo.getType());
+    }
+
+    /**
+     * The {@link BandwidthMeter} of a player. Its transfers are measured as by the ExoPlayer
+     * default meter, but its estimate is the process wide one.
+     */
+    public final class Meter implements BandwidthMeter {
+
+        private final Handler                             eventHandler;
+        private final DefaultBandwidthMeter.EventListener eventListener;
+
+        private int  streamCount;
+        private long startTimeMs;
+        private long bytesAccumulator;
+
+        Meter(Handler eventHandler, DefaultBandwidthMeter.EventListener eventListener) {
+            this.eventHandler = eventHandler;
+            this.eventListener = eventListener;
+        }
+
+        @Override
+        public long getBitrateEstimate() {
+            return BandwidthEstimator.this.getBitrateEstimate();
+        }
+
+        @Override
+        public synchronized void onTransferStart() {
+            if (streamCount == 0) {
+                startTimeMs = SystemClock.elapsedRealtime();
+            }
+            streamCount++;
+        }
+
+        @Override
+        public synchronized void onBytesTransferred(int bytes) {
+            bytesAccumulator += bytes;
+        }
+
+        @Override
+        public synchronized void onTransferEnd() {
+            if (streamCount <= 0) {
+                return;
+            }
+            long nowMs = SystemClock.elapsedRealtime();
+            int elapsedMs = (int) (nowMs - startTimeMs);
+            if (elapsedMs > 0) {
+                long estimate = addSample(bytesAccumulator, elapsedMs);
+                notifyBandwidthSample(elapsedMs, bytesAccumulator, estimate);
+            }
+            streamCount--;
+            if (streamCount > 0) {
+                startTimeMs = nowMs;
+            }
+            bytesAccumulator = 0;
+        }
+
+        private void notifyBandwidthSample(final int elapsedMs, final long bytes,
+                                           final long bitrate) {
+            if (eventHandler != null && eventListener != null) {
+                eventHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        eventListener.onBandwidthSample(elapsedMs, bytes, bitrate);
+                    }
+                });
+            }
+        }
+    }
+}
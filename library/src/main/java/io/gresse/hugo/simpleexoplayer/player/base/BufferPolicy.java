@@ -0,0 +1,128 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+/**
+ * Describe how much a {@link DemoPlayer} buffers: the size of the buffer used by the sample source
+ * and the duration of media required to start and to resume playback after a rebuffer.
+ * <p/>
+ * Use one of the presets or create your own policy.
+ */
+public class BufferPolicy {
+
+    /**
+     * The historical behavior: 10MB of buffer, 1s to start and 5s to resume
+     */
+    public static final BufferPolicy DEFAULT = new BufferPolicy(64 * 1024, 160, 1000, 5000);
+
+    /**
+     * A small 2MB buffer, to run several players at once
+     */
+    public static final BufferPolicy LOW_MEMORY = new BufferPolicy(64 * 1024, 32, 1000, 3000);
+
+    /**
+     * Start as soon as a few frames are available, for short clips
+     */
+    public static final BufferPolicy LOW_LATENCY_START = new BufferPolicy(64 * 1024, 80, 250, 2000);
+
+    /**
+     * A large 16MB buffer and longer start and rebuffer durations, for long fullscreen playback
+     */
+    public static final BufferPolicy HIGH_THROUGHPUT = new BufferPolicy(64 * 1024, 256, 2500, 5000);
+
+    private static final long FAST_NETWORK_BITRATE = 5000000;
+    private static final long SLOW_NETWORK_BITRATE = 1000000;
+
+    /**
+     * Pick a preset from a bandwidth estimate: a fast network starts sooner, a slow one buffers more
+     * to avoid rebuffering.
+     *
+     * @param bitrateEstimate the estimate in bits per second, as given by {@link BandwidthEstimator}
+     * @return the matching preset, {@link #DEFAULT} if there is no estimate
+     */
+    public static BufferPolicy forBitrate(long bitrateEstimate) {
+        if (bitrateEstimate == BandwidthEstimator.NO_ESTIMATE) {
+            return DEFAULT;
+        }
+        if (bitrateEstimate >= FAST_NETWORK_BITRATE) {
+            return LOW_LATENCY_START;
+        }
+        if (bitrateEstimate < SLOW_NETWORK_BITRATE) {
+            return HIGH_THROUGHPUT;
+        }
+        return DEFAULT;
+    }
+
+    public final int segmentSize;
+    public final int segmentCount;
+    public final int minBufferMs;
+    public final int minRebufferMs;
+
+    /**
+     * If true, the buffer segments come from {@link SharedAllocator#getInstance()}, whose segment
+     * size is used instead of {@link #segmentSize}
+     */
+    public final boolean useSharedAllocator;
+
+    /**
+     * @param segmentSize   the size of an allocated buffer segment, in bytes
+     * @param segmentCount  the number of segments of the sample source buffer
+     * @param minBufferMs   the duration of media that must be buffered for playback to start
+     * @param minRebufferMs the duration of media that must be buffered for playback to resume after
+     *                      a rebuffer
+     */
+    public BufferPolicy(int segmentSize, int segmentCount, int minBufferMs, int minRebufferMs) {
+        this(segmentSize, segmentCount, minBufferMs, minRebufferMs, false);
+    }
+
+    /**
+     * @param useSharedAllocator true to take the buffer segments from the process wide
+     *                           {@link SharedAllocator}
+     */
+    public BufferPolicy(int segmentSize, int segmentCount, int minBufferMs, int minRebufferMs,
+                        boolean useSharedAllocator) {
+        this.segmentSize = segmentSize;
+        this.segmentCount = segmentCount;
+        this.minBufferMs = minBufferMs;
+        this.minRebufferMs = minRebufferMs;
+        this.useSharedAllocator = useSharedAllocator;
+    }
+
+    /**
+     * @return a copy of this policy taking its buffer segments from the {@link SharedAllocator}
+     */
+    public BufferPolicy shared() {
+        return new BufferPolicy(segmentSize, segmentCount, minBufferMs, minRebufferMs, true);
+    }
+
+    /**
+     * @return the total size of the sample source buffer, in bytes
+     */
+    public int getBufferSize() {
+        return segmentSize * segmentCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BufferPolicy that = (BufferPolicy) o;
+        return segmentSize == that.segmentSize
+                && segmentCount == that.segmentCount
+                && minBufferMs == that.minBufferMs
+                && minRebufferMs == that.minRebufferMs
+                && useSharedAllocator == that.useSharedAllocator;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = segmentSize;
+        result = 31 * result + segmentCount;
+        result = 31 * result + minBufferMs;
+        result = 31 * result + minRebufferMs;
+        result = 31 * result + (useSharedAllocator ? 1 : 0);
+        return result;
+    }
+}
@@ -40,7 +40,9 @@ import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
 import com.google.android.exoplayer.metadata.id3.Id3Frame;
 import com.google.android.exoplayer.text.Cue;
 import com.google.android.exoplayer.text.TextRenderer;
+import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.util.DebugTextViewHelper;
 import com.google.android.exoplayer.util.PlayerControl;
@@ -48,7 +50,8 @@ import com.google.android.exoplayer.util.PlayerControl;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.gresse.hugo.simpleexoplayer.trace.TraceRecorder;
 
 /**
  * A wrapper around {@link ExoPlayer} that provides a higher level interface. It can be prepared
@@ -161,17 +164,30 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     private static final int RENDERER_BUILDING_STATE_BUILDING = 2;
     private static final int RENDERER_BUILDING_STATE_BUILT = 3;
 
-    private final RendererBuilder                rendererBuilder;
+    private static final Listener[] NO_LISTENERS = new Listener[0];
+
+    private static int lastTraceId;
+
     private final ExoPlayer                      player;
+    private final BufferPolicy                   bufferPolicy;
+    private final Allocator                      allocator;
     private final PlayerControl                  playerControl;
     private final Handler                        mainHandler;
-    private final CopyOnWriteArrayList<Listener> listeners;
+    private final PlaybackMetrics                playbackMetrics;
+    private final TraceRecorder                  traceRecorder;
+    private final int                            traceId;
 
-    private int rendererBuildingState;
+    // Replaced on each registration change so the events are dispatched without allocation.
+    private volatile Listener[] listeners = NO_LISTENERS;
+
+    private RendererBuilder rendererBuilder;
+    private int             rendererBuildingState;
     private int lastReportedPlaybackState;
     private boolean lastReportedPlayWhenReady;
 
     private Surface       surface;
+    private boolean       drawnToSurface;
+    private boolean       surfaceDisplayedDirectly;
     private TrackRenderer videoRenderer;
     private TrackRenderer audioRenderer;
     private CodecCounters codecCounters;
@@ -180,35 +196,98 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     private BandwidthMeter bandwidthMeter;
     private boolean        backgrounded;
+    private float          volume = 1f;
 
     private CaptionListener captionListener;
     private Id3MetadataListener id3MetadataListener;
     private InternalErrorListener internalErrorListener;
     private InfoListener infoListener;
+    private StartupTimings startupTimings;
 
     public DemoPlayer(RendererBuilder rendererBuilder) {
+        this(rendererBuilder, BufferPolicy.DEFAULT);
+    }
+
+    public DemoPlayer(RendererBuilder rendererBuilder, BufferPolicy bufferPolicy) {
         this.rendererBuilder = rendererBuilder;
-        player = ExoPlayer.Factory.newInstance(RENDERER_COUNT, 1000, 5000);
+        this.bufferPolicy = bufferPolicy;
+        player = ExoPlayer.Factory.newInstance(RENDERER_COUNT, bufferPolicy.minBufferMs,
+                bufferPolicy.minRebufferMs);
         player.addListener(this);
+        allocator = bufferPolicy.useSharedAllocator
+                ? SharedAllocator.getInstance().newClient()
+                : new DefaultAllocator(bufferPolicy.segmentSize);
         playerControl = new PlayerControl(player);
         mainHandler = new Handler();
-        listeners = new CopyOnWriteArrayList<>();
+        playbackMetrics = new PlaybackMetrics();
+        traceRecorder = TraceRecorder.getInstance();
+        traceId = ++lastTraceId;
         lastReportedPlaybackState = STATE_IDLE;
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
         // Disable text initially.
         player.setSelectedTrack(TYPE_TEXT, TRACK_DISABLED);
     }
 
+    /**
+     * Change the {@link RendererBuilder} used by the next call to {@link #prepare()}. Any build
+     * operation in progress with the previous builder is canceled.
+     *
+     * @param rendererBuilder the new renderer builder
+     */
+    public void setRendererBuilder(RendererBuilder rendererBuilder) {
+        this.rendererBuilder.cancel();
+        this.rendererBuilder = rendererBuilder;
+    }
+
+    /**
+     * Get the allocator owned by this player. It outlives the renderers so that a player reused
+     * through {@link #reset()} keeps its already allocated buffer segments.
+     */
+    public Allocator getAllocator() {
+        return allocator;
+    }
+
+    public BufferPolicy getBufferPolicy() {
+        return bufferPolicy;
+    }
+
+    /**
+     * Get the quality of experience metrics of this player, collected for each prepared media.
+     */
+    public PlaybackMetrics getPlaybackMetrics() {
+        return playbackMetrics;
+    }
+
+    /**
+     * Get the id identifying the events of this player in the {@link TraceRecorder} traces.
+     */
+    public int getTraceId() {
+        return traceId;
+    }
+
     public PlayerControl getPlayerControl() {
         return playerControl;
     }
 
-    public void addListener(Listener listener) {
-        listeners.add(listener);
+    public synchronized void addListener(Listener listener) {
+        Listener[] current = listeners;
+        Listener[] updated = new Listener[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = listener;
+        listeners = updated;
     }
 
-    public void removeListener(Listener listener) {
-        listeners.remove(listener);
+    public synchronized void removeListener(Listener listener) {
+        Listener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                Listener[] updated = new Listener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
     }
 
     public void setInternalErrorListener(InternalErrorListener listener) {
@@ -227,8 +306,16 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         id3MetadataListener = listener;
     }
 
+    /**
+     * Set the timings in which the startup phases of the next prepared media are marked.
+     */
+    public void setStartupTimings(StartupTimings timings) {
+        startupTimings = timings;
+    }
+
     public void setSurface(Surface surface) {
         this.surface = surface;
+        drawnToSurface = false;
         pushSurface(false);
     }
 
@@ -236,11 +323,41 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         return surface;
     }
 
+    /**
+     * Set if the frames drawn to the surface are displayed as is, like on a SurfaceView, unlike a
+     * TextureView which composites them later. The first frame drawn then also marks
+     * {@link StartupTimings#PHASE_FIRST_FRAME_DISPLAYED}, the closest signal there is.
+     */
+    public void setSurfaceDisplayedDirectly(boolean displayedDirectly) {
+        surfaceDisplayedDirectly = displayedDirectly;
+    }
+
+    /**
+     * @return true if a frame has been drawn to the current surface
+     */
+    public boolean isDrawnToSurface() {
+        return drawnToSurface;
+    }
+
     public void blockingClearSurface() {
         surface = null;
+        drawnToSurface = false;
         pushSurface(true);
     }
 
+    /**
+     * Run the callback on the main thread once the playback thread has handled the messages sent
+     * before, like a surface change, without blocking. Must be called before {@link #release()}.
+     */
+    public void sendCallback(final Runnable callback) {
+        player.sendMessage(new ExoPlayer.ExoPlayerComponent() {
+            @Override
+            public void handleMessage(int messageType, Object message) {
+                mainHandler.post(callback);
+            }
+        }, 0, null);
+    }
+
     public int getTrackCount(int type) {
         return player.getTrackCount(type);
     }
@@ -287,6 +404,11 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         videoRenderer = null;
         audioRenderer = null;
         rendererBuildingState = RENDERER_BUILDING_STATE_BUILDING;
+        playbackMetrics.startSession();
+        traceRecorder.record(TraceRecorder.EVENT_PREPARE, traceId);
+        if (startupTimings != null) {
+            startupTimings.mark(StartupTimings.PHASE_PREPARE);
+        }
         maybeReportPlayerState();
         rendererBuilder.buildRenderers(this);
     }
@@ -314,8 +436,13 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
                 ? ((MediaCodecTrackRenderer) renderers[TYPE_AUDIO]).codecCounters : null;
         this.bandwidthMeter = bandwidthMeter;
         pushSurface(false);
+        pushVolume();
         player.prepare(renderers);
         rendererBuildingState = RENDERER_BUILDING_STATE_BUILT;
+        traceRecorder.record(TraceRecorder.EVENT_RENDERERS_BUILT, traceId);
+        if (startupTimings != null) {
+            startupTimings.mark(StartupTimings.PHASE_RENDERERS_BUILT);
+        }
     }
 
     /**
@@ -324,11 +451,13 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
      * @param e Describes the error.
      */
   /* package */ void onRenderersError(Exception e) {
+        traceRecorder.record(TraceRecorder.EVENT_ERROR, traceId);
         if (internalErrorListener != null) {
             internalErrorListener.onRendererInitializationError(e);
         }
-        for (Listener listener : listeners) {
-            listener.onError(e);
+        Listener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onError(e);
         }
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
         maybeReportPlayerState();
@@ -336,17 +465,65 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     public void setPlayWhenReady(boolean playWhenReady) {
         player.setPlayWhenReady(playWhenReady);
+        if (!playWhenReady && allocator instanceof SharedAllocator.Client) {
+            allocator.trim(0);
+        }
     }
 
     public void seekTo(long positionMs) {
+        playbackMetrics.onSeek();
+        traceRecorder.record(TraceRecorder.EVENT_SEEK, traceId, positionMs, 0);
         player.seekTo(positionMs);
     }
 
     public void release() {
         rendererBuilder.cancel();
+        playbackMetrics.endSession();
+        traceRecorder.record(TraceRecorder.EVENT_RELEASE, traceId);
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
         surface = null;
         player.release();
+        if (allocator instanceof SharedAllocator.Client) {
+            ((SharedAllocator.Client) allocator).release();
+        }
+    }
+
+    /**
+     * Stop the playback and detach the player from its surface and listeners without releasing it,
+     * so the playback thread and the allocator can be reused by a new {@link #prepare()} call.
+     */
+    public void reset() {
+        rendererBuilder.cancel();
+        playbackMetrics.endSession();
+        playbackMetrics.setSessionListener(null);
+        player.setPlayWhenReady(false);
+        if (surface != null) {
+            blockingClearSurface();
+        }
+        if (backgrounded) {
+            player.setSelectedTrack(TYPE_VIDEO, videoTrackToRestore);
+            backgrounded = false;
+        }
+        player.stop();
+        if (allocator instanceof SharedAllocator.Client) {
+            allocator.trim(0);
+        }
+        listeners = NO_LISTENERS;
+        captionListener = null;
+        id3MetadataListener = null;
+        internalErrorListener = null;
+        infoListener = null;
+        startupTimings = null;
+        surfaceDisplayedDirectly = false;
+        videoFormat = null;
+        videoRenderer = null;
+        audioRenderer = null;
+        codecCounters = null;
+        bandwidthMeter = null;
+        volume = 1f;
+        rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
+        lastReportedPlaybackState = STATE_IDLE;
+        lastReportedPlayWhenReady = false;
     }
 
     public int getPlaybackState() {
@@ -409,22 +586,27 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onPlayerError(ExoPlaybackException exception) {
+        traceRecorder.record(TraceRecorder.EVENT_ERROR, traceId);
         rendererBuildingState = RENDERER_BUILDING_STATE_IDLE;
-        for (Listener listener : listeners) {
-            listener.onError(exception);
+        Listener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onError(exception);
         }
     }
 
     @Override
     public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees,
                                    float pixelWidthHeightRatio) {
-        for (Listener listener : listeners) {
-            listener.onVideoSizeChanged(width, height, unappliedRotationDegrees, pixelWidthHeightRatio);
+        Listener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onVideoSizeChanged(width, height, unappliedRotationDegrees, pixelWidthHeightRatio);
         }
     }
 
     @Override
     public void onDroppedFrames(int count, long elapsed) {
+        playbackMetrics.onDroppedFrames(count);
+        traceRecorder.record(TraceRecorder.EVENT_DROPPED_FRAMES, traceId, count, elapsed);
         if (infoListener != null) {
             infoListener.onDroppedFrames(count, elapsed);
         }
@@ -432,6 +614,8 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onBandwidthSample(int elapsedMs, long bytes, long bitrateEstimate) {
+        playbackMetrics.onBandwidthSample(elapsedMs, bytes);
+        traceRecorder.record(TraceRecorder.EVENT_BANDWIDTH_SAMPLE, traceId, bytes, elapsedMs);
         if (infoListener != null) {
             infoListener.onBandwidthSample(elapsedMs, bytes, bitrateEstimate);
         }
@@ -440,6 +624,13 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onDownstreamFormatChanged(int sourceId, Format format, int trigger,
                                           long mediaTimeMs) {
+        if (sourceId == TYPE_VIDEO) {
+            traceRecorder.record(TraceRecorder.EVENT_VIDEO_FORMAT, traceId, format.bitrate,
+                    mediaTimeMs);
+        } else if (sourceId == TYPE_AUDIO) {
+            traceRecorder.record(TraceRecorder.EVENT_AUDIO_FORMAT, traceId, format.bitrate,
+                    mediaTimeMs);
+        }
         if (infoListener == null) {
             return;
         }
@@ -486,6 +677,9 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onAudioTrackUnderrun(int bufferSize, long bufferSizeMs, long elapsedSinceLastFeedMs) {
+        playbackMetrics.onAudioTrackUnderrun();
+        traceRecorder.record(TraceRecorder.EVENT_AUDIO_UNDERRUN, traceId, bufferSizeMs,
+                elapsedSinceLastFeedMs);
         if (internalErrorListener != null) {
             internalErrorListener.onAudioTrackUnderrun(bufferSize, bufferSizeMs, elapsedSinceLastFeedMs);
         }
@@ -501,6 +695,12 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onDecoderInitialized(String decoderName, long elapsedRealtimeMs,
                                      long initializationDurationMs) {
+        playbackMetrics.onDecoderInitialized(initializationDurationMs);
+        traceRecorder.record(TraceRecorder.EVENT_DECODER_INITIALIZED, traceId,
+                initializationDurationMs, 0);
+        if (startupTimings != null) {
+            startupTimings.mark(StartupTimings.PHASE_DECODER_INITIALIZED);
+        }
         if (infoListener != null) {
             infoListener.onDecoderInitialized(decoderName, elapsedRealtimeMs, initializationDurationMs);
         }
@@ -508,6 +708,7 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onLoadError(int sourceId, IOException e) {
+        traceRecorder.record(TraceRecorder.EVENT_LOAD_ERROR, traceId, sourceId, 0);
         if (internalErrorListener != null) {
             internalErrorListener.onLoadError(sourceId, e);
         }
@@ -541,12 +742,21 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
 
     @Override
     public void onDrawnToSurface(Surface surface) {
-        // Do nothing.
+        drawnToSurface = true;
+        playbackMetrics.onDrawnToSurface();
+        traceRecorder.record(TraceRecorder.EVENT_DRAWN_TO_SURFACE, traceId);
+        if (startupTimings != null) {
+            startupTimings.mark(StartupTimings.PHASE_FIRST_FRAME_RENDERED);
+            if (surfaceDisplayedDirectly) {
+                startupTimings.mark(StartupTimings.PHASE_FIRST_FRAME_DISPLAYED);
+            }
+        }
     }
 
     @Override
     public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format,
                               long mediaStartTimeMs, long mediaEndTimeMs) {
+        traceRecorder.record(TraceRecorder.EVENT_LOAD_STARTED, traceId, sourceId, length);
         if (infoListener != null) {
             infoListener.onLoadStarted(sourceId, length, type, trigger, format, mediaStartTimeMs,
                     mediaEndTimeMs);
@@ -556,6 +766,8 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
     @Override
     public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger, Format format,
                                 long mediaStartTimeMs, long mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs) {
+        playbackMetrics.onLoadCompleted(bytesLoaded);
+        traceRecorder.record(TraceRecorder.EVENT_LOAD_COMPLETED, traceId, bytesLoaded, loadDurationMs);
         if (infoListener != null) {
             infoListener.onLoadCompleted(sourceId, bytesLoaded, type, trigger, format, mediaStartTimeMs,
                     mediaEndTimeMs, elapsedRealtimeMs, loadDurationMs);
@@ -572,22 +784,47 @@ public class DemoPlayer implements ExoPlayer.Listener, ChunkSampleSource.EventLi
         // Do nothing.
     }
 
+    /**
+     * Set the audio volume. The volume is kept when the player is prepared again.
+     *
+     * @param volume the volume, from 0 to 1
+     */
     public void setVolume(float volume) {
-        player.sendMessage(audioRenderer, MediaCodecAudioTrackRenderer.MSG_SET_VOLUME, volume);
+        this.volume = volume;
+        pushVolume();
+    }
+
+    public float getVolume() {
+        return volume;
     }
 
     private void maybeReportPlayerState() {
         boolean playWhenReady = player.getPlayWhenReady();
         int playbackState = getPlaybackState();
         if (lastReportedPlayWhenReady != playWhenReady || lastReportedPlaybackState != playbackState) {
-            for (Listener listener : listeners) {
-                listener.onStateChanged(playWhenReady, playbackState);
+            playbackMetrics.onStateChanged(playWhenReady, playbackState);
+            traceRecorder.record(TraceRecorder.EVENT_STATE_CHANGED, traceId, playbackState,
+                    playWhenReady ? 1 : 0);
+            if (startupTimings != null && playbackState == STATE_READY) {
+                startupTimings.mark(StartupTimings.PHASE_READY);
+            }
+            Listener[] listeners = this.listeners;
+            for (int i = 0; i < listeners.length; i++) {
+                listeners[i].onStateChanged(playWhenReady, playbackState);
             }
             lastReportedPlayWhenReady = playWhenReady;
             lastReportedPlaybackState = playbackState;
         }
     }
 
+    private void pushVolume() {
+        if (audioRenderer == null) {
+            return;
+        }
+
+        player.sendMessage(audioRenderer, MediaCodecAudioTrackRenderer.MSG_SET_VOLUME, volume);
+    }
+
     private void pushSurface(boolean blockForSurfacePush) {
         if (videoRenderer == null) {
             return;
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
 import android.net.Uri;
+import android.support.annotation.Nullable;
 
 import com.google.android.exoplayer.MediaCodecAudioTrackRenderer;
 import com.google.android.exoplayer.MediaCodecSelector;
@@ -29,59 +30,142 @@ import com.google.android.exoplayer.extractor.Extractor;
 import com.google.android.exoplayer.extractor.ExtractorSampleSource;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.Allocator;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
-import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
-import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+
+import java.util.concurrent.Future;
+
+import io.gresse.hugo.simpleexoplayer.cache.MediaCache;
 
 /**
  * A {@link DemoPlayer.RendererBuilder} for streams that can be read using an {@link Extractor}.
  */
 public class ExtractorRendererBuilder implements DemoPlayer.RendererBuilder {
 
-    private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
-    private static final int BUFFER_SEGMENT_COUNT = 160;
-
     private final Context context;
     private final String userAgent;
     private final Uri uri;
+    @Nullable
+    private final MediaCache mediaCache;
+
+    private AsyncRendererBuilder currentAsyncBuilder;
 
     public ExtractorRendererBuilder(Context context, String userAgent, Uri uri) {
+        this(context, userAgent, uri, null);
+    }
+
+    /**
+     * @param mediaCache (optional) the cache the media is read from and written to
+     */
+    public ExtractorRendererBuilder(Context context, String userAgent, Uri uri,
+                                    @Nullable MediaCache mediaCache) {
         this.context = context;
         this.userAgent = userAgent;
         this.uri = uri;
+        this.mediaCache = mediaCache;
     }
 
     @Override
     public void buildRenderers(DemoPlayer player) {
-        Allocator allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
-
-        // Build the video and audio renderers.
-        DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(player.getMainHandler(),
-                null);
-        DataSource dataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
-        ExtractorSampleSource sampleSource = new ExtractorSampleSource(uri, dataSource, allocator,
-                BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE);
-        MediaCodecVideoTrackRenderer videoRenderer = new MediaCodecVideoTrackRenderer(context,
-                sampleSource, MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000,
-                player.getMainHandler(), player, 50);
-        MediaCodecAudioTrackRenderer audioRenderer = new MediaCodecAudioTrackRenderer(sampleSource,
-                MediaCodecSelector.DEFAULT, null, true, player.getMainHandler(), player,
-                AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
-        TrackRenderer textRenderer = new TextTrackRenderer(sampleSource, player,
-                player.getMainHandler().getLooper());
-
-        // Invoke the callback.
-        TrackRenderer[] renderers = new TrackRenderer[DemoPlayer.RENDERER_COUNT];
-        renderers[DemoPlayer.TYPE_VIDEO] = videoRenderer;
-        renderers[DemoPlayer.TYPE_AUDIO] = audioRenderer;
-        renderers[DemoPlayer.TYPE_TEXT] = textRenderer;
-        player.onRenderers(renderers, bandwidthMeter);
+        currentAsyncBuilder = new AsyncRendererBuilder(player);
+        currentAsyncBuilder.init();
     }
 
     @Override
     public void cancel() {
-        // Do nothing.
+        if (currentAsyncBuilder != null) {
+            currentAsyncBuilder.cancel();
+            currentAsyncBuilder = null;
+        }
+    }
+
+    /**
+     * Build the renderers on a {@link RendererBuilderExecutor} thread, as querying the audio
+     * capabilities and creating the extractors can block, then give them to the player on its main
+     * thread.
+     */
+    private final class AsyncRendererBuilder implements Runnable {
+
+        private final DemoPlayer player;
+
+        private volatile boolean   canceled;
+        private          Future<?> future;
+
+        AsyncRendererBuilder(DemoPlayer player) {
+            this.player = player;
+        }
+
+        void init() {
+            future = RendererBuilderExecutor.submit(this);
+        }
+
+        void cancel() {
+            canceled = true;
+            future.cancel(true);
+        }
+
+        @Override
+        public void run() {
+            final TrackRenderer[] renderers;
+            final BandwidthMeter bandwidthMeter;
+            try {
+                bandwidthMeter = BandwidthEstimator.getInstance(context)
+                        .newMeter(player.getMainHandler(), player);
+                renderers = buildRenderers(bandwidthMeter);
+            } catch (final RuntimeException e) {
+                if (!canceled) {
+                    player.getMainHandler().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!canceled) {
+                                player.onRenderersError(e);
+                            }
+                        }
+                    });
+                }
+                return;
+            }
+
+            if (canceled) {
+                return;
+            }
+
+            player.getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!canceled) {
+                        player.onRenderers(renderers, bandwidthMeter);
+                    }
+                }
+            });
+        }
+
+        private TrackRenderer[] buildRenderers(BandwidthMeter bandwidthMeter) {
+            Allocator allocator = player.getAllocator();
+
+            // Build the video and audio renderers.
+            DataSource dataSource =
+                    BandwidthEstimator.createDataSource(context, userAgent, bandwidthMeter);
+            if (mediaCache != null) {
+                dataSource = mediaCache.createDataSource(dataSource);
+            }
+            ExtractorSampleSource sampleSource = new ExtractorSampleSource(uri, dataSource, allocator,
+                    player.getBufferPolicy().getBufferSize());
+            MediaCodecVideoTrackRenderer videoRenderer = new MediaCodecVideoTrackRenderer(context,
+                    sampleSource, MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000,
+                    player.getMainHandler(), player, 50);
+            MediaCodecAudioTrackRenderer audioRenderer = new MediaCodecAudioTrackRenderer(sampleSource,
+                    MediaCodecSelector.DEFAULT, null, true, player.getMainHandler(), player,
+                    AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
+            TrackRenderer textRenderer = new TextTrackRenderer(sampleSource, player,
+                    player.getMainHandler().getLooper());
+
+            TrackRenderer[] renderers = new TrackRenderer[DemoPlayer.RENDERER_COUNT];
+            renderers[DemoPlayer.TYPE_VIDEO] = videoRenderer;
+            renderers[DemoPlayer.TYPE_AUDIO] = audioRenderer;
+            renderers[DemoPlayer.TYPE_TEXT] = textRenderer;
+            return renderers;
+        }
     }
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.MediaCodec;
+import android.os.Handler;
+
+import com.google.android.exoplayer.DefaultLoadControl;
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.MediaCodecAudioTrackRenderer;
+import com.google.android.exoplayer.MediaCodecSelector;
+import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
+import com.google.android.exoplayer.TrackRenderer;
+import com.google.android.exoplayer.audio.AudioCapabilities;
+import com.google.android.exoplayer.hls.DefaultHlsTrackSelector;
+import com.google.android.exoplayer.hls.HlsChunkSource;
+import com.google.android.exoplayer.hls.HlsPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylistParser;
+import com.google.android.exoplayer.hls.HlsSampleSource;
+import com.google.android.exoplayer.hls.PtsTimestampAdjusterProvider;
+import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.google.android.exoplayer.metadata.id3.Id3Parser;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.util.ManifestFetcher;
+import com.google.android.exoplayer.util.ManifestFetcher.ManifestCallback;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A {@link DemoPlayer.RendererBuilder} for HLS. The variant is chosen adaptively using the
+ * bandwidth estimated by the {@link BandwidthEstimator}, seeded from the previous sessions on the
+ * same network.
+ */
+public class HlsRendererBuilder implements DemoPlayer.RendererBuilder {
+
+    private final Context context;
+    private final String userAgent;
+    private final String url;
+
+    private AsyncRendererBuilder currentAsyncBuilder;
+
+    public HlsRendererBuilder(Context context, String userAgent, String url) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.url = url;
+    }
+
+    @Override
+    public void buildRenderers(DemoPlayer player) {
+        currentAsyncBuilder = new AsyncRendererBuilder(context, userAgent, url, player);
+        currentAsyncBuilder.init();
+    }
+
+    @Override
+    public void cancel() {
+        if (currentAsyncBuilder != null) {
+            currentAsyncBuilder.cancel();
+            currentAsyncBuilder = null;
+        }
+    }
+
+    private static final class AsyncRendererBuilder implements ManifestCallback<HlsPlaylist> {
+
+        private final Context context;
+        private final String userAgent;
+        private final DemoPlayer player;
+        private final ManifestFetcher<HlsPlaylist> playlistFetcher;
+
+        private boolean canceled;
+
+        public AsyncRendererBuilder(Context context, String userAgent, String url, DemoPlayer player) {
+            this.context = context;
+            this.userAgent = userAgent;
+            this.player = player;
+            HlsPlaylistParser parser = new HlsPlaylistParser();
+            playlistFetcher = new ManifestFetcher<>(url, new DefaultUriDataSource(context, userAgent),
+                    parser);
+        }
+
+        public void init() {
+            playlistFetcher.singleLoad(player.getMainHandler().getLooper(), this);
+        }
+
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public void onSingleManifestError(IOException e) {
+            if (canceled) {
+                return;
+            }
+
+            player.onRenderersError(e);
+        }
+
+        @Override
+        public void onSingleManifest(HlsPlaylist manifest) {
+            if (canceled) {
+                return;
+            }
+
+            Handler mainHandler = player.getMainHandler();
+            LoadControl loadControl = new DefaultLoadControl(player.getAllocator());
+            BandwidthMeter bandwidthMeter =
+                    BandwidthEstimator.getInstance(context).newMeter(mainHandler, player);
+            PtsTimestampAdjusterProvider timestampAdjusterProvider = new PtsTimestampAdjusterProvider();
+
+            // Build the video/audio/id3 renderers.
+            DataSource dataSource =
+                    BandwidthEstimator.createDataSource(context, userAgent, bandwidthMeter);
+            HlsChunkSource chunkSource = new HlsChunkSource(true /* isMaster */, dataSource, manifest,
+                    DefaultHlsTrackSelector.newDefaultInstance(context), bandwidthMeter,
+                    timestampAdjusterProvider, HlsChunkSource.ADAPTIVE_MODE_SPLICE);
+            HlsSampleSource sampleSource = new HlsSampleSource(chunkSource, loadControl,
+                    player.getBufferPolicy().getBufferSize(), mainHandler, player, DemoPlayer.TYPE_VIDEO);
+            MediaCodecVideoTrackRenderer videoRenderer = new MediaCodecVideoTrackRenderer(context,
+                    sampleSource, MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT,
+                    5000, mainHandler, player, 50);
+            MediaCodecAudioTrackRenderer audioRenderer = new MediaCodecAudioTrackRenderer(sampleSource,
+                    MediaCodecSelector.DEFAULT, null, true, mainHandler, player,
+                    AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
+            MetadataTrackRenderer<List<Id3Frame>> id3Renderer = new MetadataTrackRenderer<>(
+                    sampleSource, new Id3Parser(), player, mainHandler.getLooper());
+
+            TrackRenderer[] renderers = new TrackRenderer[DemoPlayer.RENDERER_COUNT];
+            renderers[DemoPlayer.TYPE_VIDEO] = videoRenderer;
+            renderers[DemoPlayer.TYPE_AUDIO] = audioRenderer;
+            renderers[DemoPlayer.TYPE_METADATA] = id3Renderer;
+            player.onRenderers(renderers, bandwidthMeter);
+        }
+
+    }
+
+}
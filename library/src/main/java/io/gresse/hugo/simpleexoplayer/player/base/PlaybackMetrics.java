@@ -0,0 +1,278 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer.ExoPlayer;
+
+/**
+ * Quality of experience metrics of a {@link DemoPlayer}, always collected. A session starts when the
+ * player is prepared and ends when it is prepared again, reset or released.
+ * <p/>
+ * The events only update primitive counters and fixed size ring buffers, so the collection costs
+ * nothing to the playback. Objects are only created when a {@link Snapshot} is taken. All the
+ * methods must be called on the main thread, where the player events are delivered.
+ */
+public class PlaybackMetrics {
+
+    /**
+     * The number of recent bandwidth samples and decoder initializations averaged
+     */
+    public static final int RING_CAPACITY = 32;
+
+    /**
+     * Notified with the final metrics of each session
+     */
+    public interface SessionListener {
+        void onSessionEnded(Snapshot snapshot);
+    }
+
+    /**
+     * The metrics of a session at the time it was taken. Durations are in milliseconds, the
+     * bitrate in bits per second, and -1 means the value is not known yet.
+     */
+    public static final class Snapshot {
+        public final int   sessionId;
+        public final long  sessionDurationMs;
+        public final long  timeToFirstFrameMs;
+        public final int   rebufferCount;
+        public final long  rebufferDurationMs;
+        public final long  playingDurationMs;
+        public final int   droppedFrames;
+        public final float droppedFramesPerMinute;
+        public final long  averageBitrate;
+        public final long  averageDecoderInitMs;
+        public final int   audioUnderrunCount;
+        public final long  bytesLoaded;
+
+        Snapshot(int sessionId, long sessionDurationMs, long timeToFirstFrameMs, int rebufferCount,
+                 long rebufferDurationMs, long playingDurationMs, int droppedFrames,
+                 long averageBitrate, long averageDecoderInitMs, int audioUnderrunCount,
+                 long bytesLoaded) {
+            this.sessionId = sessionId;
+            this.sessionDurationMs = sessionDurationMs;
+            this.timeToFirstFrameMs = timeToFirstFrameMs;
+            this.rebufferCount = rebufferCount;
+            this.rebufferDurationMs = rebufferDurationMs;
+            this.playingDurationMs = playingDurationMs;
+            this.droppedFrames = droppedFrames;
+            this.droppedFramesPerMinute = playingDurationMs > 0
+                    ? droppedFrames * 60000f / playingDurationMs : 0;
+            this.averageBitrate = averageBitrate;
+            this.averageDecoderInitMs = averageDecoderInitMs;
+            this.audioUnderrunCount = audioUnderrunCount;
+            this.bytesLoaded = bytesLoaded;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{sessionId=" + sessionId
+                    + ", sessionDurationMs=" + sessionDurationMs
+                    + ", timeToFirstFrameMs=" + timeToFirstFrameMs
+                    + ", rebufferCount=" + rebufferCount
+                    + ", rebufferDurationMs=" + rebufferDurationMs
+                    + ", playingDurationMs=" + playingDurationMs
+                    + ", droppedFrames=" + droppedFrames
+                    + ", droppedFramesPerMinute=" + droppedFramesPerMinute
+                    + ", averageBitrate=" + averageBitrate
+                    + ", averageDecoderInitMs=" + averageDecoderInitMs
+                    + ", audioUnderrunCount=" + audioUnderrunCount
+                    + ", bytesLoaded=" + bytesLoaded
+                    + '}';
+        }
+    }
+
+    private static int lastSessionId;
+
+    private final LongRing bandwidthBytes;
+    private final LongRing bandwidthElapsedMs;
+    private final LongRing decoderInitMs;
+
+    private SessionListener sessionListener;
+
+    private boolean active;
+    private int     sessionId;
+    private long    sessionStartMs;
+    private long    sessionEndMs;
+    private long    timeToFirstFrameMs;
+    private int     rebufferCount;
+    private long    rebufferDurationMs;
+    private long    rebufferStartMs;
+    private long    playingDurationMs;
+    private long    playingStartMs;
+    private int     droppedFrames;
+    private int     audioUnderrunCount;
+    private long    bytesLoaded;
+    private boolean hasBeenReady;
+    private boolean seeking;
+
+    public PlaybackMetrics() {
+        bandwidthBytes = new LongRing(RING_CAPACITY);
+        bandwidthElapsedMs = new LongRing(RING_CAPACITY);
+        decoderInitMs = new LongRing(RING_CAPACITY);
+    }
+
+    public void setSessionListener(SessionListener listener) {
+        sessionListener = listener;
+    }
+
+    public boolean isSessionActive() {
+        return active;
+    }
+
+    /**
+     * Take a snapshot of the current session, or of the last one if it has ended
+     */
+    public Snapshot snapshot() {
+        long now = SystemClock.elapsedRealtime();
+        long rebuffering = rebufferStartMs >= 0 ? now - rebufferStartMs : 0;
+        long playing = playingStartMs >= 0 ? now - playingStartMs : 0;
+        long sessionDuration = (active ? now : sessionEndMs) - sessionStartMs;
+        long elapsedMs = bandwidthElapsedMs.sum();
+        return new Snapshot(
+                sessionId,
+                sessionDuration,
+                timeToFirstFrameMs,
+                rebufferCount,
+                rebufferDurationMs + rebuffering,
+                playingDurationMs + playing,
+                droppedFrames,
+                elapsedMs > 0 ? bandwidthBytes.sum() * 8000 / elapsedMs : -1,
+                decoderInitMs.size() > 0 ? decoderInitMs.sum() / decoderInitMs.size() : -1,
+                audioUnderrunCount,
+                bytesLoaded);
+    }
+
+    /* package */ void startSession() {
+        endSession();
+        active = true;
+        sessionId = ++lastSessionId;
+        sessionStartMs = SystemClock.elapsedRealtime();
+        timeToFirstFrameMs = -1;
+        rebufferCount = 0;
+        rebufferDurationMs = 0;
+        rebufferStartMs = -1;
+        playingDurationMs = 0;
+        playingStartMs = -1;
+        droppedFrames = 0;
+        audioUnderrunCount = 0;
+        bytesLoaded = 0;
+        hasBeenReady = false;
+        seeking = false;
+        bandwidthBytes.clear();
+        bandwidthElapsedMs.clear();
+        decoderInitMs.clear();
+    }
+
+    /* package */ void endSession() {
+        if (!active) {
+            return;
+        }
+        onStateChanged(false, ExoPlayer.STATE_IDLE);
+        Snapshot snapshot = sessionListener != null ? snapshot() : null;
+        sessionEndMs = SystemClock.elapsedRealtime();
+        active = false;
+        if (snapshot != null) {
+            sessionListener.onSessionEnded(snapshot);
+        }
+    }
+
+    /* package */ void onStateChanged(boolean playWhenReady, int playbackState) {
+        if (!active) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+
+        boolean playing = playWhenReady && playbackState == ExoPlayer.STATE_READY;
+        if (playing && playingStartMs < 0) {
+            playingStartMs = now;
+        } else if (!playing && playingStartMs >= 0) {
+            playingDurationMs += now - playingStartMs;
+            playingStartMs = -1;
+        }
+
+        // A buffering caused by a seek, or before the first frame, is not a rebuffer
+        boolean rebuffering = playbackState == ExoPlayer.STATE_BUFFERING && hasBeenReady && !seeking;
+        if (rebuffering && rebufferStartMs < 0) {
+            rebufferCount++;
+            rebufferStartMs = now;
+        } else if (!rebuffering && rebufferStartMs >= 0) {
+            rebufferDurationMs += now - rebufferStartMs;
+            rebufferStartMs = -1;
+        }
+
+        if (playbackState == ExoPlayer.STATE_READY) {
+            hasBeenReady = true;
+            seeking = false;
+        }
+    }
+
+    /* package */ void onSeek() {
+        seeking = true;
+    }
+
+    /* package */ void onDrawnToSurface() {
+        if (active && timeToFirstFrameMs < 0) {
+            timeToFirstFrameMs = SystemClock.elapsedRealtime() - sessionStartMs;
+        }
+    }
+
+    /* package */ void onDroppedFrames(int count) {
+        droppedFrames += count;
+    }
+
+    /* package */ void onBandwidthSample(int elapsedMs, long bytes) {
+        bandwidthBytes.add(bytes);
+        bandwidthElapsedMs.add(elapsedMs);
+    }
+
+    /* package */ void onDecoderInitialized(long initializationDurationMs) {
+        decoderInitMs.add(initializationDurationMs);
+    }
+
+    /* package */ void onAudioTrackUnderrun() {
+        audioUnderrunCount++;
+    }
+
+    /* package */ void onLoadCompleted(long bytes) {
+        bytesLoaded += bytes;
+    }
+
+    /**
+     * A fixed capacity ring of long values, keeping the most recent ones
+     */
+    private static final class LongRing {
+
+        private final long[] values;
+        private       int    next;
+        private       int    size;
+
+        LongRing(int capacity) {
+            values = new long[capacity];
+        }
+
+        void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if (size < values.length) {
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        void clear() {
+            next = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The background threads the {@link DemoPlayer.RendererBuilder} use to do their blocking work, so
+ * that preparing a player never blocks the main thread.
+ */
+/* package */ final class RendererBuilderExecutor {
+
+    private static final int THREAD_COUNT = 2;
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 10,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RendererBuilder-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        EXECUTOR = executor;
+    }
+
+    private RendererBuilderExecutor() {
+    }
+
+    /**
+     * Run the given task in background
+     *
+     * @return a future that can be used to interrupt the task
+     */
+    public static Future<?> submit(Runnable runnable) {
+        return EXECUTOR.submit(runnable);
+    }
+}
@@ -0,0 +1,194 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import com.google.android.exoplayer.upstream.Allocation;
+import com.google.android.exoplayer.upstream.Allocator;
+
+import java.util.Arrays;
+
+/**
+ * A process wide pool of buffer segments shared by all the players using a {@link BufferPolicy}
+ * with {@link BufferPolicy#useSharedAllocator}. Each player gets its own {@link Client}, and the
+ * loading of a client is blocked once it holds more than its fair share of the global budget, so
+ * the total memory used stays bounded whatever the number of players.
+ * <p/>
+ * Unused segments are kept for reuse and freed by {@link #trim()}, which is called when a client is
+ * paused or released.
+ */
+public final class SharedAllocator {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+    public static final int DEFAULT_TOTAL_BUDGET = 24 * 1024 * 1024;
+
+    private static SharedAllocator sInstance;
+
+    private final int individualAllocationLength;
+
+    private int          totalBudget;
+    private int          clientCount;
+    private int          allocatedCount;
+    private int          availableCount;
+    private Allocation[] availableAllocations;
+
+    public static synchronized SharedAllocator getInstance() {
+        if (sInstance == null) {
+            sInstance = new SharedAllocator(DEFAULT_SEGMENT_SIZE, DEFAULT_TOTAL_BUDGET);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param individualAllocationLength the size of each segment, in bytes
+     * @param totalBudget                the number of bytes shared by all the clients
+     */
+    public SharedAllocator(int individualAllocationLength, int totalBudget) {
+        this.individualAllocationLength = individualAllocationLength;
+        this.totalBudget = totalBudget;
+        this.availableAllocations = new Allocation[16];
+    }
+
+    /**
+     * Change the global budget. Clients above their new share stop loading until they release some
+     * segments.
+     *
+     * @param totalBudget the number of bytes shared by all the clients
+     */
+    public synchronized void setTotalBudget(int totalBudget) {
+        this.totalBudget = totalBudget;
+        notifyAll();
+        trim();
+    }
+
+    public synchronized int getTotalBudget() {
+        return totalBudget;
+    }
+
+    /**
+     * @return the number of bytes currently used by all the clients
+     */
+    public synchronized int getTotalBytesAllocated() {
+        return allocatedCount * individualAllocationLength;
+    }
+
+    /**
+     * @return the number of bytes a single client is allowed to hold
+     */
+    public synchronized int getFairShare() {
+        return totalBudget / Math.max(1, clientCount);
+    }
+
+    /**
+     * Create a new client, which counts in the fair share computation until it is released.
+     */
+    public synchronized Client newClient() {
+        clientCount++;
+        notifyAll();
+        return new Client();
+    }
+
+    /**
+     * Free the unused segments of the pool, the segments held by the clients are kept.
+     */
+    public synchronized void trim() {
+        Arrays.fill(availableAllocations, 0, availableCount, null);
+        availableCount = 0;
+    }
+
+    private synchronized Allocation allocate() {
+        allocatedCount++;
+        if (availableCount > 0) {
+            Allocation allocation = availableAllocations[--availableCount];
+            availableAllocations[availableCount] = null;
+            return allocation;
+        }
+        return new Allocation(new byte[individualAllocationLength], 0);
+    }
+
+    private synchronized void release(Allocation allocation) {
+        if (availableCount == availableAllocations.length) {
+            availableAllocations = Arrays.copyOf(availableAllocations, availableAllocations.length * 2);
+        }
+        availableAllocations[availableCount++] = allocation;
+        allocatedCount--;
+        notifyAll();
+    }
+
+    private synchronized void releaseClient() {
+        clientCount--;
+        notifyAll();
+        trim();
+    }
+
+    /**
+     * The {@link Allocator} of a single player.
+     */
+    public final class Client implements Allocator {
+
+        private int     allocatedCount;
+        private boolean released;
+
+        private Client() {
+        }
+
+        @Override
+        public Allocation allocate() {
+            synchronized (SharedAllocator.this) {
+                allocatedCount++;
+                return SharedAllocator.this.allocate();
+            }
+        }
+
+        @Override
+        public void release(Allocation allocation) {
+            synchronized (SharedAllocator.this) {
+                allocatedCount--;
+                SharedAllocator.this.release(allocation);
+            }
+        }
+
+        /**
+         * Free the unused segments of the shared pool, the segments held by the clients are kept.
+         */
+        @Override
+        public void trim(int targetSize) {
+            SharedAllocator.this.trim();
+        }
+
+        /**
+         * Block until this client holds less than the given limit and less than its fair share.
+         */
+        @Override
+        public void blockWhileTotalBytesAllocatedExceeds(int limit) throws InterruptedException {
+            synchronized (SharedAllocator.this) {
+                while (getTotalBytesAllocated() > Math.min(limit, getFairShare())) {
+                    SharedAllocator.this.wait();
+                }
+            }
+        }
+
+        @Override
+        public int getTotalBytesAllocated() {
+            synchronized (SharedAllocator.this) {
+                return allocatedCount * individualAllocationLength;
+            }
+        }
+
+        @Override
+        public int getIndividualAllocationLength() {
+            return individualAllocationLength;
+        }
+
+        /**
+         * Stop counting this client in the fair share computation. The segments still held are
+         * given back as usual when released by the sample source.
+         */
+        public void release() {
+            synchronized (SharedAllocator.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                releaseClient();
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import io.gresse.hugo.simpleexoplayer.util.Utils;
+
+/**
+ * A {@link DemoPlayer.RendererBuilder} for media whose type is unknown. The first bytes of the
+ * media are read in background to guess the container, then the building is delegated to the
+ * {@link DemoPlayer.RendererBuilder} given by the {@link Resolver} for this type.
+ */
+public class SniffingRendererBuilder implements DemoPlayer.RendererBuilder {
+
+    private static final int SNIFF_LENGTH = 512;
+
+    /**
+     * Give the renderer builder matching a sniffed mime type
+     */
+    public interface Resolver {
+        /**
+         * @param mimeType the sniffed mime type, or null if the container is not recognized
+         * @return the renderer builder to use, or null if the type is not supported
+         */
+        @Nullable
+        DemoPlayer.RendererBuilder resolve(@Nullable String mimeType);
+    }
+
+    private final Context  context;
+    private final String   userAgent;
+    private final Uri      uri;
+    private final Resolver resolver;
+
+    private AsyncRendererBuilder currentAsyncBuilder;
+
+    public SniffingRendererBuilder(Context context, String userAgent, Uri uri, Resolver resolver) {
+        this.context = context;
+        this.userAgent = userAgent;
+        this.uri = uri;
+        this.resolver = resolver;
+    }
+
+    @Override
+    public void buildRenderers(DemoPlayer player) {
+        currentAsyncBuilder = new AsyncRendererBuilder(player);
+        currentAsyncBuilder.init();
+    }
+
+    @Override
+    public void cancel() {
+        if (currentAsyncBuilder != null) {
+            currentAsyncBuilder.cancel();
+            currentAsyncBuilder = null;
+        }
+    }
+
+    private final class AsyncRendererBuilder implements Runnable {
+
+        private final DemoPlayer player;
+
+        private volatile boolean                    canceled;
+        private          Future<?>                  future;
+        private          DemoPlayer.RendererBuilder delegate;
+
+        AsyncRendererBuilder(DemoPlayer player) {
+            this.player = player;
+        }
+
+        void init() {
+            future = RendererBuilderExecutor.submit(this);
+        }
+
+        void cancel() {
+            canceled = true;
+            future.cancel(true);
+            if (delegate != null) {
+                delegate.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            final byte[] data = new byte[SNIFF_LENGTH];
+            int length = 0;
+            IOException error = null;
+            DataSource dataSource = new DefaultUriDataSource(context, userAgent);
+            try {
+                dataSource.open(new DataSpec(uri, 0, SNIFF_LENGTH, null));
+                int read = 0;
+                while (!canceled && length < SNIFF_LENGTH && read != C.RESULT_END_OF_INPUT) {
+                    read = dataSource.read(data, length, SNIFF_LENGTH - length);
+                    if (read > 0) {
+                        length += read;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                try {
+                    dataSource.close();
+                } catch (IOException e) {
+                    // Ignore, the bytes have already been read.
+                }
+            }
+
+            if (canceled) {
+                return;
+            }
+
+            final IOException finalError = error;
+            final String mimeType = Utils.sniffMimeType(data, length);
+            player.getMainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    onSniffed(mimeType, finalError);
+                }
+            });
+        }
+
+        private void onSniffed(@Nullable String mimeType, @Nullable IOException error) {
+            if (canceled) {
+                return;
+            }
+            if (error != null) {
+                player.onRenderersError(error);
+                return;
+            }
+            delegate = resolver.resolve(mimeType);
+            if (delegate == null) {
+                player.onRenderersError(new IllegalStateException("Unsupported type: " + mimeType));
+                return;
+            }
+            delegate.buildRenderers(player);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.gresse.hugo.simpleexoplayer.player.base;
+
+import java.util.Arrays;
+
+/**
+ * The monotonic timestamps of the startup phases of a media, from the player initialization to the
+ * first frame displayed, to know where the startup time goes.
+ * <p/>
+ * Only the first occurrence of each phase is kept. A phase which did not happen yet has no time.
+ */
+public class StartupTimings {
+
+    /**
+     * The player is initialized, or a new media is loaded
+     */
+    public static final int PHASE_INIT                   = 0;
+    /**
+     * The inner player starts preparing, the renderers building starts
+     */
+    public static final int PHASE_PREPARE                = 1;
+    /**
+     * The renderers are built and given to the playback thread
+     */
+    public static final int PHASE_RENDERERS_BUILT        = 2;
+    /**
+     * The first decoder is initialized
+     */
+    public static final int PHASE_DECODER_INITIALIZED    = 3;
+    /**
+     * The player is ready to play for the first time
+     */
+    public static final int PHASE_READY                  = 4;
+    /**
+     * The first frame is rendered to the surface by the decoder
+     */
+    public static final int PHASE_FIRST_FRAME_RENDERED   = 5;
+    /**
+     * The first frame is displayed by the TextureView, or rendered to the surface of a SurfaceView
+     */
+    public static final int PHASE_FIRST_FRAME_DISPLAYED  = 6;
+
+    public static final int PHASE_COUNT = 7;
+
+    private static final String[] PHASE_NAMES = {
+            "init",
+            "prepare",
+            "renderersBuilt",
+            "decoderInitialized",
+            "ready",
+            "firstFrameRendered",
+            "firstFrameDisplayed"
+    };
+
+    public interface Listener {
+        /**
+         * Called when the first frame of the media is displayed
+         */
+        void onStartupCompleted(StartupTimings timings);
+    }
+
+    private final long[] timesNs;
+
+    private Listener listener;
+
+    public StartupTimings() {
+        timesNs = new long[PHASE_COUNT];
+        Arrays.fill(timesNs, -1);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Mark the given phase now, if not marked yet
+     */
+    public void mark(int phase) {
+        mark(phase, System.nanoTime());
+    }
+
+    /**
+     * Mark the given phase at the given time, if not marked yet
+     *
+     * @param phase  one of the PHASE_* constants
+     * @param timeNs the {@link System#nanoTime()} of the phase
+     */
+    public void mark(int phase, long timeNs) {
+        if (timesNs[phase] >= 0) {
+            return;
+        }
+        timesNs[phase] = timeNs;
+        if (phase == PHASE_FIRST_FRAME_DISPLAYED && listener != null) {
+            listener.onStartupCompleted(this);
+        }
+    }
+
+    public boolean isMarked(int phase) {
+        return timesNs[phase] >= 0;
+    }
+
+    public boolean isCompleted() {
+        return isMarked(PHASE_FIRST_FRAME_DISPLAYED);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the phase, or -1 if not marked
+     */
+    public long getTimeNs(int phase) {
+        return timesNs[phase];
+    }
+
+    /**
+     * @return the time between two phases in milliseconds, or -1 if one of them is not marked
+     */
+    public long getElapsedMs(int fromPhase, int toPhase) {
+        if (timesNs[fromPhase] < 0 || timesNs[toPhase] < 0) {
+            return -1;
+        }
+        return (timesNs[toPhase] - timesNs[fromPhase]) / 1000000;
+    }
+
+    /**
+     * @return the time spent from the previous marked phase to the given one in milliseconds, or -1
+     * if the phase is not marked or is the first one
+     */
+    public long getPhaseDurationMs(int phase) {
+        for (int previous = phase - 1; previous >= 0; previous--) {
+            if (timesNs[previous] >= 0) {
+                return getElapsedMs(previous, phase);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the time from the initialization to the first displayed frame in milliseconds, or -1
+     * if the startup is not completed
+     */
+    public long getTotalMs() {
+        return getElapsedMs(PHASE_INIT, PHASE_FIRST_FRAME_DISPLAYED);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("StartupTimings{");
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (phase > 0) {
+                builder.append(", ");
+            }
+            builder.append(PHASE_NAMES[phase]).append('=').append(getPhaseDurationMs(phase));
+        }
+        return builder.append(", total=").append(getTotalMs()).append('}').toString();
+    }
+}
@@ -0,0 +1,225 @@
+package io.gresse.hugo.simpleexoplayer.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read a trace dumped by {@link TraceRecorder} and convert it to JSON, or to the Chrome trace event
+ * format to be opened in chrome://tracing or Perfetto. It does not depend on Android, so a trace
+ * pulled from a device can be converted on a computer:
+ * <pre>
+ * java io.gresse.hugo.simpleexoplayer.trace.TraceReader trace.bin chrome > trace.json
+ * </pre>
+ */
+public class TraceReader {
+
+    private static final String[] EVENT_NAMES = {
+            "prepare",
+            "renderersBuilt",
+            "stateChanged",
+            "seek",
+            "error",
+            "drawnToSurface",
+            "videoFormat",
+            "audioFormat",
+            "droppedFrames",
+            "bandwidthSample",
+            "loadStarted",
+            "loadCompleted",
+            "loadError",
+            "decoderInitialized",
+            "audioUnderrun",
+            "release"
+    };
+
+    private static final String[][] VALUE_NAMES = {
+            {},
+            {},
+            {"state", "playWhenReady"},
+            {"positionMs"},
+            {},
+            {},
+            {"bitrate", "mediaTimeMs"},
+            {"bitrate", "mediaTimeMs"},
+            {"count", "elapsedMs"},
+            {"bytes", "elapsedMs"},
+            {"sourceId", "length"},
+            {"bytesLoaded", "loadDurationMs"},
+            {"sourceId"},
+            {"initializationDurationMs"},
+            {"bufferSizeMs", "elapsedSinceLastFeedMs"},
+            {}
+    };
+
+    // The value holding the duration in milliseconds of the event ending at the record, or -1
+    private static final int[] DURATION_VALUE = {
+            -1, -1, -1, -1, -1, -1, -1, -1, -1, 1, -1, 1, -1, 0, -1, -1
+    };
+
+    /**
+     * A trace record
+     */
+    public static final class Record {
+        public final long timeNs;
+        public final int  type;
+        public final int  playerId;
+        public final long value1;
+        public final long value2;
+
+        public Record(long timeNs, int type, int playerId, long value1, long value2) {
+            this.timeNs = timeNs;
+            this.type = type;
+            this.playerId = playerId;
+            this.value1 = value1;
+            this.value2 = value2;
+        }
+
+        public String getName() {
+            return type >= 0 && type < EVENT_NAMES.length ? EVENT_NAMES[type] : "event" + type;
+        }
+    }
+
+    private final List<Record> mRecords;
+
+    public TraceReader(List<Record> records) {
+        mRecords = records;
+    }
+
+    /**
+     * Read a trace written by {@link TraceRecorder#dump(java.io.OutputStream)}
+     */
+    public static TraceReader read(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != TraceRecorder.MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        int version = input.readInt();
+        if (version != TraceRecorder.VERSION) {
+            throw new IOException("Unsupported trace version: " + version);
+        }
+        int size = input.readInt();
+        List<Record> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            records.add(new Record(input.readLong(), input.readInt(), input.readInt(),
+                    input.readLong(), input.readLong()));
+        }
+        return new TraceReader(records);
+    }
+
+    public List<Record> getRecords() {
+        return Collections.unmodifiableList(mRecords);
+    }
+
+    /**
+     * Write the records as a JSON array, times in nanoseconds relative to the first record
+     */
+    public void writeJson(Writer writer) throws IOException {
+        long origin = mRecords.isEmpty() ? 0 : mRecords.get(0).timeNs;
+        writer.write("[");
+        for (int i = 0; i < mRecords.size(); i++) {
+            Record record = mRecords.get(i);
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("{\"timeNs\":" + (record.timeNs - origin)
+                    + ",\"event\":\"" + record.getName() + "\""
+                    + ",\"player\":" + record.playerId);
+            writeValues(writer, record, true);
+            writer.write("}");
+        }
+        writer.write("\n]\n");
+        writer.flush();
+    }
+
+    /**
+     * Write the records in the Chrome trace event format, one track per player. Loads and decoder
+     * initializations are written as complete events spanning their duration, the other events as
+     * instant events.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        // The origin is the start of the earliest event, so no timestamp is negative
+        long origin = Long.MAX_VALUE;
+        for (int i = 0; i < mRecords.size(); i++) {
+            origin = Math.min(origin, mRecords.get(i).timeNs - getDurationMs(mRecords.get(i)) * 1000000);
+        }
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        for (int i = 0; i < mRecords.size(); i++) {
+            Record record = mRecords.get(i);
+            long timeUs = (record.timeNs - origin) / 1000;
+            int durationValue = record.type >= 0 && record.type < DURATION_VALUE.length
+                    ? DURATION_VALUE[record.type] : -1;
+
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("{\"name\":\"" + record.getName() + "\",\"pid\":1,\"tid\":" + record.playerId);
+            if (durationValue >= 0) {
+                long durationUs = getDurationMs(record) * 1000;
+                writer.write(",\"ph\":\"X\",\"ts\":" + (timeUs - durationUs) + ",\"dur\":" + durationUs);
+            } else {
+                writer.write(",\"ph\":\"i\",\"s\":\"t\",\"ts\":" + timeUs);
+            }
+            writer.write(",\"args\":{");
+            writeValues(writer, record, false);
+            writer.write("}}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /**
+     * @return the duration of the event ending at the record, 0 for an instant event
+     */
+    private static long getDurationMs(Record record) {
+        int durationValue = record.type >= 0 && record.type < DURATION_VALUE.length
+                ? DURATION_VALUE[record.type] : -1;
+        if (durationValue < 0) {
+            return 0;
+        }
+        return durationValue == 0 ? record.value1 : record.value2;
+    }
+
+    /**
+     * Write the named values of the record as JSON fields
+     *
+     * @param leadingComma true if the enclosing object already holds fields
+     */
+    private static void writeValues(Writer writer, Record record, boolean leadingComma)
+            throws IOException {
+        String[] names = record.type >= 0 && record.type < VALUE_NAMES.length
+                ? VALUE_NAMES[record.type] : new String[]{"value1", "value2"};
+        if (names.length > 0) {
+            writer.write((leadingComma ? "," : "") + "\"" + names[0] + "\":" + record.value1);
+        }
+        if (names.length > 1) {
+            writer.write(",\"" + names[1] + "\":" + record.value2);
+        }
+    }
+
+    /**
+     * Convert a trace file, to JSON by default or to the Chrome trace format with "chrome"
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReader <trace file> [json|chrome]");
+            System.exit(1);
+        }
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+        TraceReader reader;
+        try {
+            reader = read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        Writer writer = new OutputStreamWriter(System.out, "UTF-8");
+        if (args.length > 1 && args[1].equals("chrome")) {
+            reader.writeChromeTrace(writer);
+        } else {
+            reader.writeJson(writer);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.gresse.hugo.simpleexoplayer.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Record the player events in a preallocated ring of fixed size binary records, cheap enough to be
+ * left on in release builds. The trace can be dumped to a file on demand, for example when a stall
+ * is reported, then converted by {@link TraceReader}.
+ * <p/>
+ * Each record is 32 bytes: a monotonic timestamp in nanoseconds, the event type, the id of the
+ * player and two event specific values. Once the ring is full, the oldest records are overwritten.
+ * Recording never allocates.
+ */
+public final class TraceRecorder {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /* package */ static final int MAGIC   = 0x53585452; // "SXTR"
+    /* package */ static final int VERSION = 1;
+
+    public static final int EVENT_PREPARE             = 0;
+    public static final int EVENT_RENDERERS_BUILT     = 1;
+    public static final int EVENT_STATE_CHANGED       = 2; // state, playWhenReady
+    public static final int EVENT_SEEK                = 3; // positionMs
+    public static final int EVENT_ERROR               = 4;
+    public static final int EVENT_DRAWN_TO_SURFACE    = 5;
+    public static final int EVENT_VIDEO_FORMAT        = 6; // bitrate, mediaTimeMs
+    public static final int EVENT_AUDIO_FORMAT        = 7; // bitrate, mediaTimeMs
+    public static final int EVENT_DROPPED_FRAMES      = 8; // count, elapsedMs
+    public static final int EVENT_BANDWIDTH_SAMPLE    = 9; // bytes, elapsedMs
+    public static final int EVENT_LOAD_STARTED        = 10; // sourceId, length
+    public static final int EVENT_LOAD_COMPLETED      = 11; // bytesLoaded, loadDurationMs
+    public static final int EVENT_LOAD_ERROR          = 12; // sourceId
+    public static final int EVENT_DECODER_INITIALIZED = 13; // initializationDurationMs
+    public static final int EVENT_AUDIO_UNDERRUN      = 14; // bufferSizeMs, elapsedSinceLastFeedMs
+    public static final int EVENT_RELEASE             = 15;
+
+    // The long values of a record: timestamp, type and player id, first value, second value
+    private static final int RECORD_LONGS = 4;
+
+    private static TraceRecorder sInstance;
+
+    private final long[] mRecords;
+    private final int    mCapacity;
+
+    private volatile boolean mEnabled;
+    private          long    mCount;
+
+    /**
+     * Get the process wide recorder, enabled with {@link #DEFAULT_CAPACITY} records
+     */
+    public static synchronized TraceRecorder getInstance() {
+        if (sInstance == null) {
+            sInstance = new TraceRecorder(DEFAULT_CAPACITY);
+        }
+        return sInstance;
+    }
+
+    public TraceRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        mCapacity = capacity;
+        mRecords = new long[capacity * RECORD_LONGS];
+        mEnabled = true;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Record an event
+     *
+     * @param type     one of the EVENT_* types
+     * @param playerId the id of the player the event comes from
+     * @param value1   the first event specific value
+     * @param value2   the second event specific value
+     */
+    public void record(int type, int playerId, long value1, long value2) {
+        if (!mEnabled) {
+            return;
+        }
+        long time = System.nanoTime();
+        synchronized (this) {
+            int offset = (int) (mCount % mCapacity) * RECORD_LONGS;
+            mRecords[offset] = time;
+            mRecords[offset + 1] = ((long) type << 32) | (playerId & 0xFFFFFFFFL);
+            mRecords[offset + 2] = value1;
+            mRecords[offset + 3] = value2;
+            mCount++;
+        }
+    }
+
+    public void record(int type, int playerId) {
+        record(type, playerId, 0, 0);
+    }
+
+    /**
+     * @return the number of records currently kept
+     */
+    public synchronized int size() {
+        return (int) Math.min(mCount, mCapacity);
+    }
+
+    public synchronized void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * Write the kept records, oldest first, to the given file
+     */
+    public void dump(File file) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            dump(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Write the kept records, oldest first, to the given stream. The stream is not closed.
+     */
+    public void dump(OutputStream outputStream) throws IOException {
+        long[] records;
+        int size;
+        long first;
+        synchronized (this) {
+            records = mRecords.clone();
+            size = (int) Math.min(mCount, mCapacity);
+            first = mCount - size;
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(size);
+        for (long i = first; i < first + size; i++) {
+            int offset = (int) (i % mCapacity) * RECORD_LONGS;
+            output.writeLong(records[offset]);
+            output.writeInt((int) (records[offset + 1] >>> 32));
+            output.writeInt((int) records[offset + 1]);
+            output.writeLong(records[offset + 2]);
+            output.writeLong(records[offset + 3]);
+        }
+        output.flush();
+    }
+}
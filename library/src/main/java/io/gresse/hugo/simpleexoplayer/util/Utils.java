@@ -51,4 +51,103 @@ public class Utils {
         }
         return type;
     }
+
+    /**
+     * Guess the mime type of a media from its first bytes
+     *
+     * @param data   the first bytes of the media
+     * @param length the number of valid bytes in data
+     * @return the mime type like "video/mp4", or null if the container is not recognized
+     */
+    @Nullable
+    public static String sniffMimeType(byte[] data, int length) {
+        if (length >= 8 && data[4] == 'f' && data[5] == 't' && data[6] == 'y' && data[7] == 'p') {
+            return "video/mp4";
+        }
+        if (length >= 4 && (data[0] & 0xFF) == 0x1A && (data[1] & 0xFF) == 0x45
+                && (data[2] & 0xFF) == 0xDF && (data[3] & 0xFF) == 0xA3) {
+            return "video/webm";
+        }
+        if (startsWith(data, length, 0, "#EXTM3U")) {
+            return "application/x-mpegurl";
+        }
+        if (length >= 189 && data[0] == 0x47 && data[188] == 0x47) {
+            return "video/mp2t";
+        }
+        if (startsWith(data, length, 0, "OggS")) {
+            return "audio/ogg";
+        }
+        if (startsWith(data, length, 0, "ID3")
+                || (length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xE0) == 0xE0)) {
+            return "audio/mpeg";
+        }
+
+        // Skip the UTF-8 byte order mark of a DASH manifest
+        int offset = 0;
+        if (length >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB && (data[2] & 0xFF) == 0xBF) {
+            offset = 3;
+        }
+        // Any XML document starts with the prolog, only the root element tells a manifest apart
+        // from a VAST, SMIL or XHTML body
+        offset = skipXmlProlog(data, length, offset);
+        if (offset >= 0 && startsWith(data, length, offset, "<MPD")
+                && (offset + 4 == length || isXmlNameEnd(data[offset + 4]))) {
+            return "application/dash+xml";
+        }
+        return null;
+    }
+
+    /**
+     * Skip the white spaces, the XML declaration, the processing instructions, the comments and the
+     * doctype before the root element
+     *
+     * @return the offset of the root element, or -1 if it is not in the given bytes
+     */
+    private static int skipXmlProlog(byte[] data, int length, int offset) {
+        while (true) {
+            while (offset < length && Character.isWhitespace(data[offset])) {
+                offset++;
+            }
+            String end;
+            if (startsWith(data, length, offset, "<?")) {
+                end = "?>";
+            } else if (startsWith(data, length, offset, "<!--")) {
+                end = "-->";
+            } else if (startsWith(data, length, offset, "<!")) {
+                end = ">";
+            } else {
+                return offset < length ? offset : -1;
+            }
+            offset = indexOf(data, length, offset + 2, end);
+            if (offset < 0) {
+                return -1;
+            }
+            offset += end.length();
+        }
+    }
+
+    private static boolean isXmlNameEnd(byte b) {
+        return b == '>' || b == '/' || Character.isWhitespace(b);
+    }
+
+    private static int indexOf(byte[] data, int length, int offset, String pattern) {
+        for (int i = offset; i <= length - pattern.length(); i++) {
+            if (startsWith(data, length, i, pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, String prefix) {
+        if (length - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[offset + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
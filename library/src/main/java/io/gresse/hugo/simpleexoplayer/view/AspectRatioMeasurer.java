@@ -0,0 +1,62 @@
+package io.gresse.hugo.simpleexoplayer.view;
+
+/**
+ * Compute the size of a view so it matches a video aspect ratio, inside the size measured for it.
+ * It does not depend on the view, so the same math is shared by the video views.
+ */
+public class AspectRatioMeasurer {
+
+    /**
+     * The size will not be changed if the fractional difference between its natural aspect ratio
+     * and the requested aspect ratio falls below this threshold.
+     * <p>
+     * This tolerance allows the view to occupy the whole of the screen when the requested aspect
+     * ratio is very close, but not exactly equal to, the aspect ratio of the screen. This may reduce
+     * the number of view layers that need to be composited by the underlying system, which can help
+     * to reduce power consumption.
+     */
+    public static final float MAX_ASPECT_RATIO_DEFORMATION_FRACTION = 0.01f;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Compute the size matching the video aspect ratio, available through {@link #getWidth()} and
+     * {@link #getHeight()} if it differs from the measured one.
+     *
+     * @param measuredWidth    the width measured for the view
+     * @param measuredHeight   the height measured for the view
+     * @param videoAspectRatio the width to height ratio of the video, 0 if not known
+     * @return true if the view must be measured again with the computed size
+     */
+    public boolean measure(int measuredWidth, int measuredHeight, float videoAspectRatio) {
+        mWidth = measuredWidth;
+        mHeight = measuredHeight;
+        if (videoAspectRatio == 0) {
+            // Aspect ratio not set.
+            return false;
+        }
+
+        float viewAspectRatio = (float) measuredWidth / measuredHeight;
+        float aspectDeformation = videoAspectRatio / viewAspectRatio - 1;
+        if (Math.abs(aspectDeformation) <= MAX_ASPECT_RATIO_DEFORMATION_FRACTION) {
+            // We're within the allowed tolerance.
+            return false;
+        }
+
+        if (aspectDeformation > 0) {
+            mHeight = (int) (measuredWidth / videoAspectRatio);
+        } else {
+            mWidth = (int) (measuredHeight * videoAspectRatio);
+        }
+        return true;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+}
@@ -0,0 +1,91 @@
+package io.gresse.hugo.simpleexoplayer.view;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+/**
+ * A SurfaceView that set it's size depending of video ratio, like {@link AspectRatioTextureView}.
+ * <p/>
+ * The video is composited by the system instead of being drawn by the GPU in the view hierarchy,
+ * which costs less power and memory bandwidth and shows the frames one vsync earlier. But the view
+ * cannot be animated, transformed or overlapped like a TextureView, so it fits full screen playback.
+ */
+public class AspectRatioSurfaceView extends SurfaceView implements SurfaceHolder.Callback, VideoSurfaceInterface {
+
+    private final AspectRatioMeasurer mMeasurer = new AspectRatioMeasurer();
+
+    private float   mVideoAspectRatio;
+    private boolean mSurfaceAvailable;
+
+    public AspectRatioSurfaceView(Context context) {
+        super(context);
+        getHolder().addCallback(this);
+    }
+
+    public AspectRatioSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+    }
+
+    public AspectRatioSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        getHolder().addCallback(this);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public AspectRatioSurfaceView(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Set the aspect ratio that this {@link AspectRatioSurfaceView} should satisfy.
+     *
+     * @param widthHeightRatio The width to height ratio.
+     */
+    @Override
+    public void setVideoWidthHeightRatio(float widthHeightRatio) {
+        if (mVideoAspectRatio != widthHeightRatio) {
+            mVideoAspectRatio = widthHeightRatio;
+            requestLayout();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (mMeasurer.measure(getMeasuredWidth(), getMeasuredHeight(), mVideoAspectRatio)) {
+            super.onMeasure(MeasureSpec.makeMeasureSpec(mMeasurer.getWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mMeasurer.getHeight(), MeasureSpec.EXACTLY));
+        }
+    }
+
+    /**
+     * @return true between the creation and the destruction of the surface
+     */
+    public boolean isSurfaceAvailable() {
+        return mSurfaceAvailable;
+    }
+
+    /*----------------------------------------
+     * SurfaceHolder.Callback
+     */
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mSurfaceAvailable = true;
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mSurfaceAvailable = false;
+    }
+}
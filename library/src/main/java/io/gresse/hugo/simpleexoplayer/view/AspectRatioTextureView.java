@@ -21,16 +21,7 @@ public class AspectRatioTextureView extends TextureView implements TextureView.S
     public static final int LASTSTATE_DESTROYED = 2;
     public static final int LASTSTATE_UPDATED = 3;
 
-    /**
-     * The {@link AspectRatioTextureView} will not resize itself if the fractional difference between its natural
-     * aspect ratio and the requested aspect ratio falls below this threshold.
-     * <p>
-     * This tolerance allows the view to occupy the whole of the screen when the requested aspect
-     * ratio is very close, but not exactly equal to, the aspect ratio of the screen. This may reduce
-     * the number of view layers that need to be composited by the underlying system, which can help
-     * to reduce power consumption.
-     */
-    private static final float MAX_ASPECT_RATIO_DEFORMATION_FRACTION = 0.01f;
+    private final AspectRatioMeasurer mMeasurer = new AspectRatioMeasurer();
 
     private float mVideoAspectRatio;
 
@@ -85,27 +76,10 @@ public class AspectRatioTextureView extends TextureView implements TextureView.S
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        if (mVideoAspectRatio == 0) {
-            // Aspect ratio not set.
-            return;
-        }
-
-        int width = getMeasuredWidth();
-        int height = getMeasuredHeight();
-        float viewAspectRatio = (float) width / height;
-        float aspectDeformation = mVideoAspectRatio / viewAspectRatio - 1;
-        if (Math.abs(aspectDeformation) <= MAX_ASPECT_RATIO_DEFORMATION_FRACTION) {
-            // We're within the allowed tolerance.
-            return;
-        }
-
-        if (aspectDeformation > 0) {
-            height = (int) (width / mVideoAspectRatio);
-        } else {
-            width = (int) (height * mVideoAspectRatio);
+        if (mMeasurer.measure(getMeasuredWidth(), getMeasuredHeight(), mVideoAspectRatio)) {
+            super.onMeasure(MeasureSpec.makeMeasureSpec(mMeasurer.getWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(mMeasurer.getHeight(), MeasureSpec.EXACTLY));
         }
-        super.onMeasure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
-                MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
     }
 
     @Override
@@ -135,7 +109,7 @@ public class AspectRatioTextureView extends TextureView implements TextureView.S
      */
     @Override
     public void setSurfaceTextureListener(SurfaceTextureListener listener) {
-        if(mExternalListener != null){
+        if(mExternalListener != null && listener != null){
             // No listener set before, call last TextureView.SurfaceTextureListener callbacks directly on it
 
             switch (mLastState){
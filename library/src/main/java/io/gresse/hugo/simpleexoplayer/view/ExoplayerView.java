@@ -146,13 +146,71 @@ public class ExoplayerView extends AspectRatioTextureView {
     public void setVideoUrl(@NonNull String videoUrl) {
         mMediaFile = new MediaFile(videoUrl);
         mMediaFile.type = Utils.getMimeType(videoUrl);
-        if (mSimpleExoPlayer != null) {
-            mSimpleExoPlayer.release();
+        if (mSimpleExoPlayer != null && !mSimpleExoPlayer.isReleased()) {
+            // Keep the player and the surface, only the renderers are rebuilt
+            mSimpleExoPlayer.load(mMediaFile);
+            return;
         }
         maybeCreatePlayer();
         //mSimpleExoPlayer.attach(getContext(), this, 0, getId());
     }
 
+    /**
+     * Set if the video starts as soon as the view is attached to a window. Disable it when the
+     * playback is driven by a {@link VisibilityPlaybackManager}.
+     *
+     * @param autoPlay true by default, or the value of the autoPlay attribute
+     */
+    public void setAutoPlay(boolean autoPlay) {
+        mAutoPlay = autoPlay;
+    }
+
+    public boolean isAutoPlay() {
+        return mAutoPlay;
+    }
+
+    /**
+     * Start or resume the video. If the player has been released, it is initialized again and
+     * resumes at the position it was released at.
+     */
+    public void play() {
+        if (mSimpleExoPlayer == null && !maybeCreatePlayer()) {
+            return;
+        }
+        if (mSimpleExoPlayer.isReleased()) {
+            mSimpleExoPlayer.init();
+            if (mSimpleExoPlayerListener != null) {
+                // The listeners are removed on release
+                mSimpleExoPlayer.addPlayerListener(mSimpleExoPlayerListener);
+            }
+            if (mPreLoad) {
+                mSimpleExoPlayer.preLoad();
+            }
+            if (getWindowToken() != null) {
+                mSimpleExoPlayer.attach(getContext(), this, 0, getId());
+            }
+        }
+        mSimpleExoPlayer.start();
+    }
+
+    /**
+     * Pause the video, the player and its decoders are kept
+     */
+    public void pause() {
+        if (mSimpleExoPlayer != null && !mSimpleExoPlayer.isReleased()) {
+            mSimpleExoPlayer.pause();
+        }
+    }
+
+    /**
+     * Release the player and its decoders, {@link #play()} initializes it again
+     */
+    public void releasePlayer() {
+        if (mSimpleExoPlayer != null && !mSimpleExoPlayer.isReleased()) {
+            mSimpleExoPlayer.release();
+        }
+    }
+
     /**
      * Get the current player, if any
      */
@@ -0,0 +1,247 @@
+package io.gresse.hugo.simpleexoplayer.view;
+
+import android.graphics.Rect;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.gresse.hugo.simpleexoplayer.player.SimpleExoPlayer;
+
+/**
+ * Drive the playback of several {@link ExoplayerView} from how much of each is on screen, for
+ * example in a feed: only the most visible views play, the others are paused, and released once
+ * off screen if requested, so hidden players do not decode.
+ * <p/>
+ * The visible fractions are computed at most once per frame, and only on frames where one of the
+ * view trees is drawn. The registered views do not auto play anymore, the manager starts them.
+ */
+public class VisibilityPlaybackManager implements ViewTreeObserver.OnPreDrawListener,
+        Choreographer.FrameCallback, View.OnAttachStateChangeListener {
+
+    public static final float DEFAULT_MIN_VISIBLE_FRACTION = 0.5f;
+
+    private final List<ExoplayerView> mViews;
+    private final Rect                mVisibleRect;
+    private final Choreographer       mChoreographer;
+
+    private int     mMaxPlaying;
+    private float   mMinVisibleFraction;
+    private boolean mReleaseHidden;
+    private boolean mFrameScheduled;
+
+    // Indexed as mViews, reused on each frame
+    private float[]   mFractions;
+    private boolean[] mSelected;
+    private boolean[] mPlaying;
+
+    public VisibilityPlaybackManager() {
+        mViews = new ArrayList<>();
+        mVisibleRect = new Rect();
+        mChoreographer = Choreographer.getInstance();
+        mMaxPlaying = 1;
+        mMinVisibleFraction = DEFAULT_MIN_VISIBLE_FRACTION;
+        mFractions = new float[0];
+        mSelected = new boolean[0];
+        mPlaying = new boolean[0];
+    }
+
+    /**
+     * Set how many views may play at once, the most visible ones
+     *
+     * @param maxPlaying 1 by default
+     */
+    public void setMaxPlaying(int maxPlaying) {
+        if (maxPlaying < 0) {
+            throw new IllegalArgumentException("The maximum number of playing views must be positive");
+        }
+        mMaxPlaying = maxPlaying;
+        scheduleUpdate();
+    }
+
+    /**
+     * Set the fraction of a view that must be on screen for it to play
+     *
+     * @param minVisibleFraction between 0 and 1, {@link #DEFAULT_MIN_VISIBLE_FRACTION} by default
+     */
+    public void setMinVisibleFraction(float minVisibleFraction) {
+        mMinVisibleFraction = minVisibleFraction;
+        scheduleUpdate();
+    }
+
+    /**
+     * Set if the player of a view is released once the view is completely off screen, instead of
+     * only paused. It frees the decoders and the buffers, but the playback takes longer to resume.
+     *
+     * @param releaseHidden false by default
+     */
+    public void setReleaseHidden(boolean releaseHidden) {
+        mReleaseHidden = releaseHidden;
+        scheduleUpdate();
+    }
+
+    /**
+     * Start driving the playback of the given view
+     */
+    public void register(ExoplayerView view) {
+        if (mViews.contains(view)) {
+            return;
+        }
+        view.setAutoPlay(false);
+        mViews.add(view);
+        int count = mViews.size();
+        if (mFractions.length < count) {
+            int capacity = Math.max(count, mFractions.length * 2);
+            mFractions = new float[capacity];
+            mSelected = new boolean[capacity];
+            boolean[] playing = new boolean[capacity];
+            System.arraycopy(mPlaying, 0, playing, 0, count - 1);
+            mPlaying = playing;
+        }
+        mPlaying[count - 1] = isStarted(view);
+
+        view.addOnAttachStateChangeListener(this);
+        if (view.getWindowToken() != null) {
+            view.getViewTreeObserver().addOnPreDrawListener(this);
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Stop driving the playback of the given view. Its player is left as is.
+     */
+    public void unregister(ExoplayerView view) {
+        int index = mViews.indexOf(view);
+        if (index < 0) {
+            return;
+        }
+        mViews.remove(index);
+        System.arraycopy(mPlaying, index + 1, mPlaying, index, mViews.size() - index);
+
+        view.removeOnAttachStateChangeListener(this);
+        view.getViewTreeObserver().removeOnPreDrawListener(this);
+        scheduleUpdate();
+    }
+
+    /**
+     * Unregister all the views and release their players
+     */
+    public void release() {
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            ExoplayerView view = mViews.get(i);
+            unregister(view);
+            view.releasePlayer();
+        }
+        mChoreographer.removeFrameCallback(this);
+        mFrameScheduled = false;
+    }
+
+    /**
+     * @return the fraction of the view on screen, between 0 and 1
+     */
+    public float getVisibleFraction(View view) {
+        if (view.getWindowToken() == null || !view.isShown()) {
+            return 0;
+        }
+        int area = view.getWidth() * view.getHeight();
+        if (area == 0 || !view.getLocalVisibleRect(mVisibleRect)) {
+            return 0;
+        }
+        return (float) (mVisibleRect.width() * mVisibleRect.height()) / area;
+    }
+
+    /*----------------------------------------
+    * Listeners
+    */
+
+    @Override
+    public boolean onPreDraw() {
+        scheduleUpdate();
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        update();
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View view) {
+        view.getViewTreeObserver().addOnPreDrawListener(this);
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View view) {
+        view.getViewTreeObserver().removeOnPreDrawListener(this);
+        scheduleUpdate();
+    }
+
+    /*----------------------------------------
+    * Private methods
+    */
+
+    private void scheduleUpdate() {
+        if (!mFrameScheduled && !mViews.isEmpty()) {
+            mFrameScheduled = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * @return true if the player of the view plays or will play once ready
+     */
+    private static boolean isStarted(ExoplayerView view) {
+        SimpleExoPlayer player = view.getPlayer();
+        return player != null && !player.isReleased() && (player.isPlaying() || player.isAutoPlay());
+    }
+
+    /**
+     * Play the most visible views and pause or release the others
+     */
+    private void update() {
+        int count = mViews.size();
+        for (int i = 0; i < count; i++) {
+            mFractions[i] = getVisibleFraction(mViews.get(i));
+            mSelected[i] = false;
+        }
+
+        // The views are few, a selection of the most visible ones is enough
+        for (int selected = 0; selected < mMaxPlaying; selected++) {
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                if (!mSelected[i] && mFractions[i] >= mMinVisibleFraction
+                        && (best < 0 || mFractions[i] > mFractions[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            mSelected[best] = true;
+        }
+
+        for (int i = 0; i < count; i++) {
+            ExoplayerView view = mViews.get(i);
+            if (mSelected[i]) {
+                if (!mPlaying[i]) {
+                    mPlaying[i] = true;
+                    view.play();
+                }
+                continue;
+            }
+            // The view may have been started outside of the manager, for example when restored
+            if (mPlaying[i] || isStarted(view)) {
+                mPlaying[i] = false;
+                view.pause();
+            }
+            SimpleExoPlayer player = view.getPlayer();
+            if (mReleaseHidden && mFractions[i] == 0 && player != null && !player.isReleased()) {
+                view.releasePlayer();
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class PlayerListenerListTest {
+
+    // Few enough to stay out of the optimizing compiler, whose escape analysis would hide the
+    // allocations the Android runtime does
+    private static final int  DISPATCH_COUNT      = 1000;
+    // Below one allocation per dispatch, leaves room for the measurement itself
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    private PlayerListenerList mList;
+    private CountingListener   mAllListener;
+    private CountingListener   mProgressListener;
+
+    @Before
+    public void setUp() {
+        mList = new PlayerListenerList();
+        mAllListener = new CountingListener();
+        mProgressListener = new CountingListener();
+        mList.add(mAllListener, PlayerListenerList.EVENT_ALL);
+        mList.add(mProgressListener, PlayerListenerList.EVENT_PROGRESS);
+    }
+
+    @Test
+    public void dispatchProgress_doesNotAllocate() {
+        assumeAllocationMeasurable();
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < DISPATCH_COUNT; i++) {
+                    mList.dispatchProgress(i);
+                }
+            }
+        };
+        // Load the classes used by the dispatch
+        dispatch.run();
+
+        long allocatedBytes = measureAllocatedBytes(dispatch);
+
+        assertTrue("Allocated " + allocatedBytes + " bytes", allocatedBytes < MAX_ALLOCATED_BYTES);
+        assertEquals(2 * DISPATCH_COUNT, mProgressListener.progress);
+    }
+
+    @Test
+    public void dispatchStateChanges_doNotAllocate() {
+        assumeAllocationMeasurable();
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < DISPATCH_COUNT; i++) {
+                    mList.dispatchLoaded();
+                    mList.dispatchStartPlaying();
+                    mList.dispatchFinishPlaying();
+                }
+            }
+        };
+        dispatch.run();
+
+        long allocatedBytes = measureAllocatedBytes(dispatch);
+
+        assertTrue("Allocated " + allocatedBytes + " bytes", allocatedBytes < MAX_ALLOCATED_BYTES);
+        assertEquals(2 * DISPATCH_COUNT, mAllListener.finishPlaying);
+    }
+
+    @Test
+    public void dispatch_filtersByEventMask() {
+        mList.dispatchLoaded();
+        mList.dispatchStartPlaying();
+        mList.dispatchProgress(1000);
+
+        assertEquals(1, mAllListener.loaded);
+        assertEquals(1, mAllListener.startPlaying);
+        assertEquals(1, mAllListener.progress);
+        assertEquals(0, mProgressListener.loaded);
+        assertEquals(0, mProgressListener.startPlaying);
+        assertEquals(1, mProgressListener.progress);
+    }
+
+    @Test
+    public void add_registeredListener_replacesEventMask() {
+        mList.add(mProgressListener, PlayerListenerList.EVENT_LOADED);
+
+        mList.dispatchLoaded();
+        mList.dispatchProgress(1000);
+
+        assertEquals(1, mProgressListener.loaded);
+        assertEquals(0, mProgressListener.progress);
+    }
+
+    @Test
+    public void remove_duringDispatch_stillNotifiesCurrentListeners() {
+        final CountingListener removing = new CountingListener() {
+            @Override
+            public void playerFinishPlaying() {
+                super.playerFinishPlaying();
+                mList.remove(mAllListener);
+            }
+        };
+        mList.clear();
+        mList.add(removing, PlayerListenerList.EVENT_ALL);
+        mList.add(mAllListener, PlayerListenerList.EVENT_ALL);
+
+        mList.dispatchFinishPlaying();
+        mList.dispatchFinishPlaying();
+
+        assertEquals(2, removing.finishPlaying);
+        assertEquals(1, mAllListener.finishPlaying);
+    }
+
+    private static void assumeAllocationMeasurable() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private static long measureAllocatedBytes(Runnable runnable) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static class CountingListener implements SimpleExoPlayerListener {
+
+        int loaded;
+        int startPlaying;
+        int finishPlaying;
+        int progress;
+
+        @Override
+        public void playerIsLoaded() {
+            loaded++;
+        }
+
+        @Override
+        public void playerViewAttached() {
+        }
+
+        @Override
+        public void playerError(Exception e) {
+        }
+
+        @Override
+        public void playerWillStartPlaying() {
+        }
+
+        @Override
+        public void playerStartPlaying() {
+            startPlaying++;
+        }
+
+        @Override
+        public void playerSurfaceDestroyedShouldPause() {
+        }
+
+        @Override
+        public void playerFinishPlaying() {
+            finishPlaying++;
+        }
+
+        @Override
+        public void playerPublishProgress(long milliSecond) {
+            progress++;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.gresse.hugo.simpleexoplayer.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SurfaceAttachStateTest {
+
+    private SurfaceAttachState<Object> mState;
+    private Object                     mInlineSurface;
+    private Object                     mFullscreenSurface;
+
+    @Before
+    public void setUp() {
+        mState = new SurfaceAttachState<>();
+        mInlineSurface = new Object();
+        mFullscreenSurface = new Object();
+    }
+
+    @Test
+    public void attach_surfaceAvailable_attachesNow() {
+        assertEquals(SurfaceAttachState.ATTACH_NOW, mState.attach(true, mInlineSurface));
+        assertSame(mInlineSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void attach_surfaceNotAvailable_waitsForPreviousSurfaceDestroyed() {
+        attachInline();
+
+        assertEquals(SurfaceAttachState.ATTACH_WAIT, mState.attach(false, null));
+        assertTrue(mState.isRequestNewAttach());
+
+        assertEquals(SurfaceAttachState.DESTROYED_RESTORE_SAVED,
+                mState.onSurfaceDestroyed(mInlineSurface, null));
+        assertFalse(mState.isRequestNewAttach());
+        assertTrue(mState.isLastSurfaceDestroyed());
+        assertSame(mInlineSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void attach_afterSurfaceDestroyed_restoresSavedSurface() {
+        attachInline();
+        assertEquals(SurfaceAttachState.DESTROYED_CURRENT,
+                mState.onSurfaceDestroyed(mInlineSurface, mInlineSurface));
+
+        assertEquals(SurfaceAttachState.ATTACH_RESTORE_SAVED, mState.attach(false, null));
+    }
+
+    @Test
+    public void handoff_targetAvailable_attachesTarget() {
+        attachInline();
+
+        assertTrue(mState.handoff(true, mFullscreenSurface));
+        assertSame(mFullscreenSurface, mState.getSavedSurface());
+        // Still drawing on the inline view until attached
+        assertSame(mInlineSurface, mState.getPlayerSurface());
+
+        mState.onPlayerAttached(mFullscreenSurface);
+        assertSame(mFullscreenSurface, mState.getPlayerSurface());
+    }
+
+    @Test
+    public void handoff_targetNotAvailable_attachesOnSurfaceAvailable() {
+        attachInline();
+
+        assertFalse(mState.handoff(false, null));
+        assertSame(mInlineSurface, mState.getPlayerSurface());
+
+        assertTrue(mState.onSurfaceAvailable(mFullscreenSurface, mFullscreenSurface));
+        assertSame(mFullscreenSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void handoff_toSurfacePlayerDrawsOn_doesNothing() {
+        attachInline();
+
+        assertFalse(mState.handoff(true, mInlineSurface));
+    }
+
+    @Test
+    public void handoff_clearsPendingAttach() {
+        attachInline();
+        mState.attach(false, null);
+
+        mState.handoff(true, mFullscreenSurface);
+
+        assertFalse(mState.isRequestNewAttach());
+        assertFalse(mState.isLastSurfaceDestroyed());
+    }
+
+    @Test
+    public void handoff_previousViewEvents_areIgnored() {
+        attachInline();
+        mState.handoff(true, mFullscreenSurface);
+        mState.onPlayerAttached(mFullscreenSurface);
+
+        assertFalse(mState.onSurfaceAvailable(mInlineSurface, mFullscreenSurface));
+        assertEquals(SurfaceAttachState.DESTROYED_OTHER_VIEW,
+                mState.onSurfaceDestroyed(mInlineSurface, mFullscreenSurface));
+        assertSame(mFullscreenSurface, mState.getSavedSurface());
+        assertFalse(mState.isLastSurfaceDestroyed());
+    }
+
+    @Test
+    public void handoff_previousViewDestroyedBeforeSwitch_isNotReleased() {
+        attachInline();
+        mState.handoff(true, mFullscreenSurface);
+
+        // The player still draws on the inline surface, it must not be released
+        assertEquals(SurfaceAttachState.DESTROYED_CURRENT,
+                mState.onSurfaceDestroyed(mInlineSurface, mFullscreenSurface));
+    }
+
+    @Test
+    public void handoff_back_reattachesPreviousSurface() {
+        attachInline();
+        mState.handoff(true, mFullscreenSurface);
+        mState.onPlayerAttached(mFullscreenSurface);
+
+        assertTrue(mState.handoff(true, mInlineSurface));
+        assertSame(mInlineSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void surfaceView_allTextureEventsAreFromOtherViews() {
+        attachInline();
+        mState.attachSurfaceView();
+        mState.onPlayerDetached();
+
+        assertNull(mState.getSavedSurface());
+        assertFalse(mState.onSurfaceAvailable(mFullscreenSurface, null));
+        assertEquals(SurfaceAttachState.DESTROYED_OTHER_VIEW,
+                mState.onSurfaceDestroyed(mInlineSurface, null));
+
+        mState.detachSurfaceView();
+        assertTrue(mState.onSurfaceAvailable(mFullscreenSurface, null));
+    }
+
+    @Test
+    public void surfaceView_toPendingTexture_attachesWhenAvailable() {
+        mState.attachSurfaceView();
+        mState.onPlayerDetached();
+
+        mState.detachSurfaceView();
+        assertEquals(SurfaceAttachState.ATTACH_WAIT, mState.attach(false, null));
+        // Not drawing on any texture until the new one is available
+        assertNull(mState.getPlayerSurface());
+
+        assertTrue(mState.onSurfaceAvailable(mInlineSurface, mInlineSurface));
+        assertSame(mInlineSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void surfaceView_handoffToPendingTexture_attachesWhenAvailable() {
+        mState.attachSurfaceView();
+        mState.onPlayerDetached();
+
+        mState.detachSurfaceView();
+        assertFalse(mState.handoff(false, null));
+        assertNull(mState.getPlayerSurface());
+
+        assertTrue(mState.onSurfaceAvailable(mFullscreenSurface, mFullscreenSurface));
+        assertSame(mFullscreenSurface, mState.getSavedSurface());
+    }
+
+    @Test
+    public void onSurfaceReplaced_replacementIsDrawnOnAndKept() {
+        attachInline();
+        Object nextSurface = new Object();
+
+        mState.onSurfaceReplaced(nextSurface);
+
+        assertSame(nextSurface, mState.getPlayerSurface());
+        assertSame(nextSurface, mState.getSavedSurface());
+        assertEquals(SurfaceAttachState.DESTROYED_CURRENT,
+                mState.onSurfaceDestroyed(nextSurface, nextSurface));
+    }
+
+    @Test
+    public void reset_keepsSavedSurface() {
+        attachInline();
+        mState.attach(false, null);
+
+        mState.reset();
+
+        assertNull(mState.getPlayerSurface());
+        assertFalse(mState.isRequestNewAttach());
+        assertSame(mInlineSurface, mState.getSavedSurface());
+    }
+
+    private void attachInline() {
+        mState.attach(true, mInlineSurface);
+        mState.onPlayerAttached(mInlineSurface);
+    }
+}
@@ -0,0 +1,49 @@
+package io.gresse.hugo.simpleexoplayer.util;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UtilsTest {
+
+    private static final String DASH = "application/dash+xml";
+
+    @Test
+    public void sniffMimeType_mpdRoot_isDash() {
+        assertEquals(DASH, sniff("<MPD xmlns=\"urn:mpeg:dash:schema:mpd:2011\">"));
+    }
+
+    @Test
+    public void sniffMimeType_mpdAfterProlog_isDash() {
+        assertEquals(DASH, sniff("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- Generated by the packager -->\n"
+                + "<?xml-stylesheet href=\"mpd.xsl\"?>\n"
+                + "<MPD\n  type=\"static\">"));
+    }
+
+    @Test
+    public void sniffMimeType_otherXmlRoot_isNotRecognized() {
+        assertNull(sniff("<?xml version=\"1.0\"?><VAST version=\"3.0\">"));
+        assertNull(sniff("<?xml version=\"1.0\"?><smil><body/></smil>"));
+        assertNull(sniff("<?xml version=\"1.0\"?>\n<!DOCTYPE html>\n<html><body>Not found</body></html>"));
+    }
+
+    @Test
+    public void sniffMimeType_rootStartingWithMpd_isNotRecognized() {
+        assertNull(sniff("<?xml version=\"1.0\"?><MPDX>"));
+    }
+
+    @Test
+    public void sniffMimeType_rootNotInSniffedBytes_isNotRecognized() {
+        assertNull(sniff("<?xml version=\"1.0\"?><!-- truncated comment"));
+        assertNull(sniff("<?xml version=\"1.0\"?>   "));
+    }
+
+    private static String sniff(String content) {
+        byte[] data = content.getBytes(Charset.forName("UTF-8"));
+        return Utils.sniffMimeType(data, data.length);
+    }
+}